@@ -5,11 +5,16 @@
 // History:
 //   26 Mar 09  Brian Frank  Creation
 //   24 Apr 20  Brian Frank  Make Future abstract
+//   17 Oct 26  agent  Batch receive
 //
 package fan.concurrent;
 
 import fan.sys.*;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Actor is a worker who processes messages asynchronously.
@@ -45,8 +50,9 @@ public class Actor
 
     // init
     self.pool = pool;
+    self.maxQueue = pool.maxQueue;
     self.receive = receive;
-    self.queue = new Queue();
+    self.queue = new MpscQueue();
   }
 
   public static Actor makeCoalescing(ActorPool pool, Func k, Func c) { return makeCoalescing(pool, k, c, null); }
@@ -67,6 +73,75 @@ public class Actor
     self.queue = new CoalescingQueue(k, c);
   }
 
+  public static Actor makePriority(ActorPool pool, long n, Func p) { return makePriority(pool, n, p, null); }
+  public static Actor makePriority(ActorPool pool, long n, Func p, Func r)
+  {
+    Actor self = new Actor();
+    makePriority$(self, pool, n, p, r);
+    return self;
+  }
+
+  public static void makePriority$(Actor self, ActorPool pool, long n, Func p) { makePriority$(self, pool, n, p, null); }
+  public static void makePriority$(Actor self, ActorPool pool, long n, Func p, Func r)
+  {
+    if (n < 1 || n > LaneQueue.maxLanes) throw ArgErr.make("Invalid lanes: " + n);
+    p = (Func)p.toImmutable();
+
+    make$(self, pool, r);
+    self.queue = new LaneQueue(pool, (int)n, p, false, null, null);
+  }
+
+  public static Actor makePriorityCoalescing(ActorPool pool, long n, Func p, Func k, Func c) { return makePriorityCoalescing(pool, n, p, k, c, null); }
+  public static Actor makePriorityCoalescing(ActorPool pool, long n, Func p, Func k, Func c, Func r)
+  {
+    Actor self = new Actor();
+    makePriorityCoalescing$(self, pool, n, p, k, c, r);
+    return self;
+  }
+
+  public static void makePriorityCoalescing$(Actor self, ActorPool pool, long n, Func p, Func k, Func c) { makePriorityCoalescing$(self, pool, n, p, k, c, null); }
+  public static void makePriorityCoalescing$(Actor self, ActorPool pool, long n, Func p, Func k, Func c, Func r)
+  {
+    if (n < 1 || n > LaneQueue.maxLanes) throw ArgErr.make("Invalid lanes: " + n);
+    p = (Func)p.toImmutable();
+    if (k != null) k = (Func)k.toImmutable();
+    if (c != null) c = (Func)c.toImmutable();
+
+    make$(self, pool, r);
+    self.queue = new LaneQueue(pool, (int)n, p, true, k, c);
+  }
+
+  public static Actor makeBatch(ActorPool pool, long max) { return makeBatch(pool, max, null); }
+  public static Actor makeBatch(ActorPool pool, long max, Func r)
+  {
+    Actor self = new Actor();
+    makeBatch$(self, pool, max, r);
+    return self;
+  }
+
+  public static void makeBatch$(Actor self, ActorPool pool, long max) { makeBatch$(self, pool, max, null); }
+  public static void makeBatch$(Actor self, ActorPool pool, long max, Func r)
+  {
+    // check pool
+    if (pool == null)
+      throw NullErr.make("pool is null");
+
+    // check batch size and receiveBatch method
+    if (max < 1 || max > Integer.MAX_VALUE)
+      throw ArgErr.make("Invalid maxBatchSize: " + max);
+    if (r == null && self.typeof().qname().equals("concurrent::Actor"))
+      throw ArgErr.make("must supply receiveBatch func or subclass Actor");
+    if (r != null) r = (Func)r.toImmutable();
+
+    // init
+    self.pool = pool;
+    self.maxQueue = pool.maxQueue;
+    self.receiveBatch = r;
+    self.batch = new Mail[(int)Math.min(max, 1024L)];
+    self.maxBatchSize = (int)max;
+    self.queue = new MpscQueue();
+  }
+
   public Actor()
   {
     this.context  = new Context(this);
@@ -95,6 +170,96 @@ public class Actor
 
   public final Future sendLater(Duration d, Object msg) { return _send(msg, d, null); }
 
+  public final void sendNoReply(Object msg)
+  {
+    msg = _safe(msg);
+    if (pool.isStopped()) throw Err.make("ActorPool is stopped [" + pool.name + "]");
+    _enqueue(new Mail.NoReply(msg), false, true);
+  }
+
+  public final Future sendBlocking(Object msg) { return sendBlocking(msg, null); }
+  public final Future sendBlocking(Object msg, Duration timeout)
+  {
+    msg = _safe(msg);
+    if (pool.isStopped()) throw Err.make("ActorPool is stopped [" + pool.name + "]");
+
+    ActorFuture f = new ActorFuture(msg);
+    ActorFuture r = (ActorFuture)_offer(f, true, true);
+    if (r != null) return r;
+
+    long deadline = timeout == null ? Long.MAX_VALUE : Duration.nowMillis() + timeout.millis();
+    Backpressure bp = backpressure();
+    try
+    {
+      synchronized (bp)
+      {
+        bp.blocked++;
+        try
+        {
+          while (true)
+          {
+            // flag we are waiting, then re-check for space so that
+            // we never miss a release by the actor's thread
+            bp.waiting = true;
+            if (pool.isStopped()) throw Err.make("ActorPool is stopped [" + pool.name + "]");
+            if (bp.pending.isEmpty())
+            {
+              r = (ActorFuture)_offer(f, true, true);
+              if (r != null) return r;
+            }
+
+            // wait for actor to make space or timeout
+            long left = deadline - Duration.nowMillis();
+            if (left <= 0L) break;
+            bp.wait(left);
+          }
+        }
+        finally
+        {
+          bp.blocked--;
+          bp.waiting = bp.blocked > 0 || !bp.pending.isEmpty();
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      throw InterruptedErr.make(e);
+    }
+
+    // timed out
+    pool.metrics.overflows.increment();
+    f.completeErr(QueueOverflowErr.make("queueSize: " + queue.size));
+    return f;
+  }
+
+  public final Future sendAsync(Object msg)
+  {
+    msg = _safe(msg);
+    if (pool.isStopped()) throw Err.make("ActorPool is stopped [" + pool.name + "]");
+
+    // fast path if nobody else is waiting
+    ActorFuture f = new ActorFuture(msg);
+    Backpressure bp = this.backpressure;
+    if (bp == null || !bp.waiting)
+    {
+      Mail r = _offer(f, true, true);
+      if (r != null) return new ActorFuture(null).complete(r);
+    }
+
+    // park the message until the actor makes space
+    ActorFuture accepted = new ActorFuture(null);
+    bp = backpressure();
+    synchronized (bp)
+    {
+      bp.pending.addLast(new Offer(f, accepted));
+      bp.waiting = true;
+    }
+
+    // space may have freed up before we flagged waiting
+    release(bp);
+    return accepted;
+  }
+
   public final Future sendWhenComplete(Future f, Object msg) { return _send(msg, null, f); }
 
   public final Future sendWhenDone(Future f, Object msg) { return _send(msg, null, f); }
@@ -106,6 +271,14 @@ public class Actor
     return null;
   }
 
+  protected List receiveBatch(List msgs)
+  {
+    if (receiveBatch != null) return (List)receiveBatch.call(msgs);
+    List results = List.make(Sys.ObjType.toNullable(), msgs.size());
+    for (int i=0; i<msgs.size(); ++i) results.add(receive(msgs.get(i)));
+    return results;
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Diagnostics
 //////////////////////////////////////////////////////////////////////////
@@ -113,11 +286,11 @@ public class Actor
   public final String threadState()
   {
     if (curMsg != idleMsg) return "running";
-    if (submitted) return "pending";
+    if (submitted.get()) return "pending";
     return "idle";
   }
 
-  public final boolean isQueueFull() { return queue.size >= (int)pool.maxQueue; }
+  public final boolean isQueueFull() { return queue.size >= capacity(); }
 
   public final long queueSize() { return queue.size; }
 
@@ -127,6 +300,24 @@ public class Actor
 
   public final long receiveTicks() { return receiveTicks; }
 
+  public final long maxBatchSize() { return maxBatchSize; }
+
+  public final long maxQueue() { return maxQueue; }
+  public void maxQueue$init(Func f, long x) { maxQueue = x; }
+  public long maxQueue;
+
+  public final Map metrics()
+  {
+    Map m = Map.make(Sys.StrType, Sys.ObjType);
+    m.set("receiveCount", Long.valueOf(receiveCount));
+    m.set("receiveTicks", Long.valueOf(receiveTicks));
+    m.set("queueSize",    Long.valueOf(queue.size));
+    m.set("queuePeak",    Long.valueOf(queue.peak));
+    Histogram h = receiveTime;
+    if (h != null) m.set("receiveTime", h);
+    return (Map)m.toImmutable();
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Utils
 //////////////////////////////////////////////////////////////////////////
@@ -174,7 +365,7 @@ public class Actor
     else if (whenDone != null)
       toWhenDoneFuture(whenDone).sendWhenDone(this, f);
     else
-      f = _enqueue(f, true, true);
+      f = (ActorFuture)_enqueue(f, true, true);
 
     return f;
   }
@@ -187,46 +378,122 @@ public class Actor
     throw ArgErr.make("Only actor Futures supported for sendWhenComplete");
   }
 
-  final ActorFuture _enqueueLater(ActorFuture f)
+  final void _enqueueLater(ActorFuture f)
   {
-    return _enqueue(f, false, false);
+    _enqueue(f, false, false);
   }
 
-  final ActorFuture _enqueueWhenDone(ActorFuture f)
+  final void _enqueueWhenDone(ActorFuture f)
   {
-    return _enqueue(f, false, true);
+    _enqueue(f, false, true);
   }
 
-  private final ActorFuture _enqueue(ActorFuture f, boolean coalesce, boolean checkMaxQueue)
+  private final Mail _enqueue(Mail f, boolean coalesce, boolean checkMaxQueue)
   {
-    synchronized (lock)
+    Mail r = _offer(f, coalesce, checkMaxQueue);
+    if (r != null) return r;
+
+    // queue is full
+    pool.metrics.overflows.increment();
+    _fail(f, QueueOverflowErr.make("queueSize: " + queue.size));
+    return f;
+  }
+
+  /**
+   * Add the message to the queue and return its future, which might
+   * be a pending future it was coalesced into.  Return null if the
+   * queue is full.  Only an ActorFuture may be coalesced.
+   */
+  private Mail _offer(Mail f, boolean coalesce, boolean checkMaxQueue)
+  {
+    // stamp message before it is visible to the actor thread
+    ActorInstrument inst = pool.instrument;
+    if (inst != null) f.enqueueTicks = System.nanoTime();
+
+    Queue queue = this.queue;
+    if (queue.lockFree())
+    {
+      // reserve a slot in the mailbox, then link in the message
+      MpscQueue mpsc = (MpscQueue)queue;
+      if (!mpsc.reserve(checkMaxQueue ? capacity() : Integer.MAX_VALUE))
+        return null;
+      mpsc.push(f);
+    }
+    else
     {
-      // attempt to coalesce
-      if (coalesce)
+      synchronized (lock)
       {
-        ActorFuture c = queue.coalesce(f);
-        if (c != null) return c;
-      }
+        // re-read since _kill swaps in a new queue under the lock
+        queue = this.queue;
 
-      // check queue size
-      if (queue.size+1 > (int)pool.maxQueue && checkMaxQueue)
-      {
-        f.completeErr(QueueOverflowErr.make("queueSize: " + queue.size));
-        return f;
-      }
+        // attempt to coalesce
+        if (coalesce)
+        {
+          ActorFuture c = queue.coalesce((ActorFuture)f);
+          if (c != null) return c;
+        }
 
-      // add to queue
-      queue.add(f);
+        // check queue size
+        if (queue.size+1 > capacity() && checkMaxQueue)
+          return null;
 
-      // submit to thread pool if not submitted or current running
-      if (!submitted)
-      {
-        submitted = true;
-        pool.submit(this);
+        // add to queue
+        queue.add(f);
       }
+    }
 
+    // if the pool was killed while we were enqueuing, then _kill
+    // may have already drained the queue, so cancel it ourselves
+    if (pool.killed)
+    {
+      f.cancel();
       return f;
     }
+
+    // track high-water mark of queue depth across the pool
+    Metrics metrics = pool.metrics;
+    int size = queue.size;
+    if (size > metrics.queuePeak) metrics.queueDepth(size);
+    if (inst != null) onEnqueue(inst, f, size);
+
+    // submit to thread pool if not submitted or current running
+    if (!submitted.get() && submitted.compareAndSet(false, true))
+      _submit();
+
+    return f;
+  }
+
+  /**
+   * Max queue size as an int; a subclass may have set maxQueue
+   * to any value so clamp it to a usable range.
+   */
+  private int capacity()
+  {
+    long max = maxQueue;
+    return max < 1L ? 1 : max > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)max;
+  }
+
+  private void _submit()
+  {
+    Metrics metrics = pool.metrics;
+    metrics.submits.increment();
+    if (metrics.submitLatency != null) submitTicks = System.nanoTime();
+    pool.submit(this);
+  }
+
+  private Mail dequeue(ActorInstrument inst)
+  {
+    Mail f;
+    if (queue.lockFree())
+      f = queue.get();
+    else
+      synchronized (lock) { f = queue.get(); }
+    if (inst != null && f != null) onDequeue(inst, f);
+
+    // if producers are waiting on a full queue let them in
+    Backpressure bp = this.backpressure;
+    if (bp != null && bp.waiting && f != null) release(bp);
+    return f;
   }
 
   public final void _work()
@@ -234,78 +501,305 @@ public class Actor
     // reset environment for this actor
     locals.set(context.locals);
     Locale.setCur(context.locale);
+    if (affine) lastThread = Thread.currentThread();
 
     // process messages for maxTimeBeforeYield before yielding the thread
+    Metrics metrics = pool.metrics;
+    Histogram timing = metrics.receiveTime;
+    ActorInstrument inst = pool.instrument;
+    boolean timed = timing != null || inst != null;
     long maxTicks = pool.maxTimeBeforeYield.ticks();
     long startTicks = Duration.nowTicks();
+    int startCount = receiveCount;
+    if (metrics.submitLatency != null) metrics.submitLatency.record(Math.max(0L, startTicks - submitTicks));
     while (true)
     {
-      // get next message, or if none pending we are done
-      ActorFuture future = null;
-      synchronized (lock) { future = queue.get(); }
-      if (future == null) break;
-
-      // dispatch the messge
-      this.curMsg = future.msg;
-      _dispatch(future);
-      this.curMsg = idleMsg;
+      long t0 = timed ? System.nanoTime() : 0L;
+      if (maxBatchSize > 0)
+      {
+        // dispatch next batch, or if none pending we are done
+        if (!_dispatchBatch(inst)) break;
+      }
+      else
+      {
+        // get next message, or if none pending we are done
+        Mail future = dequeue(inst);
+        if (future == null) break;
+
+        // dispatch the messge
+        this.curMsg = future.msg;
+        _dispatch(future, inst);
+        this.curMsg = idleMsg;
+      }
+      if (timed)
+      {
+        long ns = System.nanoTime() - t0;
+        receiveTicks += ns;
+        if (timing != null) recordReceive(timing, ns);
+      }
 
       // if there are pending actors waiting for a thread,
       // then check if its time to yield our thread
       if (pool.hasPending())
       {
         long curTicks = Duration.nowTicks();
-        if (curTicks - startTicks >= maxTicks) break;
+        if (curTicks - startTicks >= maxTicks)
+        {
+          metrics.yields.increment();
+          if (inst != null) onYield(inst, curTicks - startTicks);
+          break;
+        }
       }
     }
+    metrics.received.add(receiveCount - startCount);
 
     // keep track of time between start and now; for efficiency we only
     // update this after a work cycle has ended - but this means its
     // possible to be stuck continously processing the queue if never have
-    // to yield our thread, in which case we won't see this stat updated
-    receiveTicks += Duration.nowTicks() - startTicks;
+    // to yield our thread, in which case we won't see this stat updated;
+    // if we already timed each message then receiveTicks is up to date
+    if (!timed) receiveTicks += Duration.nowTicks() - startTicks;
 
     // flush environment back to context
     context.locale = Locale.cur();
 
-    // done dispatching, either clear the submitted
-    // flag or resubmit to the thread pool
-    synchronized (lock)
-    {
-      if (queue.size == 0)
-      {
-        submitted = false;
-      }
-      else
-      {
-        submitted = true;
-        pool.submit(this);
-      }
-    }
+    // done dispatching, clear the submitted flag and then resubmit
+    // to the thread pool if messages arrived; we must clear the flag
+    // before checking size since a producer which saw the flag still
+    // set will have relied on us to pick up its message
+    submitted.set(false);
+    if (queue.size > 0 && submitted.compareAndSet(false, true))
+      _submit();
+  }
 
+  private void recordReceive(Histogram timing, long ns)
+  {
+    timing.record(ns);
+    if (receiveTime == null) receiveTime = Histogram.make(1L);
+    receiveTime.record(ns);
   }
 
-  final void _dispatch(ActorFuture future)
+  final void _dispatch(Mail future, ActorInstrument inst)
   {
+    long t0 = 0L;
+    Err err = null;
     try
     {
       if (future.isCancelled()) return;
       if (pool.killed) { future.cancel(); return; }
       receiveCount++;
-      future.complete(receive(future.msg));
+      if (inst != null) t0 = onReceiveStart(inst, future.msg);
+      Object result = receive(future.msg);
+      if (!future.noReply()) ((Future)future).complete(result);
     }
     catch (Err e)
     {
-      future.completeErr(e);
+      _fail(future, err = e);
     }
     catch (Throwable e)
     {
-      future.completeErr(Err.make(e));
+      _fail(future, err = Err.make(e));
+    }
+    if (t0 != 0L) onReceiveEnd(inst, future.msg, t0, err);
+  }
+
+  private void _fail(Mail future, Err err)
+  {
+    if (future.noReply())
+      pool.receiveErr(this, future.msg, err);
+    else
+      ((Future)future).completeErr(err);
+  }
+
+  private boolean _dispatchBatch(ActorInstrument inst)
+  {
+    // drain up to maxBatchSize messages skipping cancelled ones;
+    // the batch array grows on demand up to maxBatchSize
+    Mail[] batch = this.batch;
+    int n = 0;
+    while (n < maxBatchSize)
+    {
+      Mail future = dequeue(inst);
+      if (future == null) break;
+      if (future.isCancelled()) continue;
+      if (n >= batch.length)
+      {
+        Mail[] temp = new Mail[(int)Math.min(batch.length*2L, maxBatchSize)];
+        System.arraycopy(batch, 0, temp, 0, n);
+        this.batch = batch = temp;
+      }
+      batch[n++] = future;
+    }
+    if (n == 0) return false;
+
+    long t0 = 0L;
+    Object msg = null;
+    Err err = null;
+    try
+    {
+      if (pool.killed)
+      {
+        for (int i=0; i<n; ++i) batch[i].cancel();
+        return true;
+      }
+
+      List msgs = List.make(Sys.ObjType.toNullable(), n);
+      for (int i=0; i<n; ++i) msgs.add(batch[i].msg);
+      msgs = (List)msgs.toImmutable();
+
+      this.curMsg = msg = msgs;
+      receiveCount += n;
+      if (inst != null) t0 = onReceiveStart(inst, msgs);
+      List results = receiveBatch(msgs);
+      if (results == null || results.size() != n)
+        throw Err.make("receiveBatch returned " + (results == null ? "null" : results.size() + " results") + " for " + n + " msgs");
+
+      // ensure results are immutable before completing any future
+      results = (List)results.toImmutable();
+      for (int i=0; i<n; ++i)
+        if (!batch[i].noReply()) ((Future)batch[i]).complete(results.get(i));
+    }
+    catch (Err e)
+    {
+      err = e;
+      for (int i=0; i<n; ++i) _fail(batch[i], e);
+    }
+    catch (Throwable e)
+    {
+      err = Err.make(e);
+      for (int i=0; i<n; ++i) _fail(batch[i], err);
+    }
+    finally
+    {
+      this.curMsg = idleMsg;
+      for (int i=0; i<n; ++i) batch[i] = null;  // allow gc
+    }
+    if (t0 != 0L) onReceiveEnd(inst, msg, t0, err);
+    return true;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Instrumentation
+//////////////////////////////////////////////////////////////////////////
+
+  // Each hook is isolated so that a misbehaving instrument can never
+  // fail a message or kill the actor's work cycle
+
+  private void onEnqueue(ActorInstrument inst, Mail f, int size)
+  {
+    try { inst.onEnqueue(this, f.msg, size); }
+    catch (Throwable e) { e.printStackTrace(); }
+  }
+
+  private void onDequeue(ActorInstrument inst, Mail f)
+  {
+    long enq = f.enqueueTicks;
+    long wait = enq == 0L ? 0L : Math.max(0L, System.nanoTime() - enq);
+    try { inst.onDequeue(this, f.msg, wait); }
+    catch (Throwable e) { e.printStackTrace(); }
+  }
+
+  private long onReceiveStart(ActorInstrument inst, Object msg)
+  {
+    try { inst.onReceiveStart(this, msg); }
+    catch (Throwable e) { e.printStackTrace(); }
+    long t0 = System.nanoTime();
+    return t0 == 0L ? 1L : t0;  // zero means not started
+  }
+
+  private void onReceiveEnd(ActorInstrument inst, Object msg, long t0, Err err)
+  {
+    try { inst.onReceiveEnd(this, msg, System.nanoTime() - t0, err); }
+    catch (Throwable e) { e.printStackTrace(); }
+  }
+
+  private void onYield(ActorInstrument inst, long ran)
+  {
+    try { inst.onYield(this, ran); }
+    catch (Throwable e) { e.printStackTrace(); }
+  }
+
+  private Backpressure backpressure()
+  {
+    Backpressure bp = this.backpressure;
+    if (bp != null) return bp;
+    synchronized (lock)
+    {
+      if (this.backpressure == null) this.backpressure = new Backpressure();
+      return this.backpressure;
+    }
+  }
+
+  /**
+   * Move as many pending sendAsync messages into the queue as will
+   * fit and wake up any threads blocked in sendBlocking.
+   */
+  private void release(Backpressure bp)
+  {
+    // if killed then messages waiting for space are never accepted
+    if (pool.killed) { cancel(bp); return; }
+
+    ArrayList accepted = null;
+    synchronized (bp)
+    {
+      while (!bp.pending.isEmpty())
+      {
+        Offer offer = (Offer)bp.pending.getFirst();
+        Mail r = _offer(offer.future, true, true);
+        if (r == null) break;
+        bp.pending.removeFirst();
+        if (accepted == null) accepted = new ArrayList();
+        accepted.add(offer.accepted);
+        accepted.add(r);
+      }
+      if (bp.blocked > 0) bp.notifyAll();
+      bp.waiting = bp.blocked > 0 || !bp.pending.isEmpty();
+    }
+
+    // complete accepted futures outside of lock
+    if (accepted == null) return;
+    for (int i=0; i<accepted.size(); i+=2)
+      ((ActorFuture)accepted.get(i)).complete(accepted.get(i+1));
+  }
+
+  /**
+   * Cancel messages waiting for space and wake blocked senders.
+   */
+  private static void cancel(Backpressure bp)
+  {
+    ArrayList offers;
+    synchronized (bp)
+    {
+      offers = new ArrayList(bp.pending);
+      bp.pending.clear();
+      bp.waiting = bp.blocked > 0;
+      bp.notifyAll();
+    }
+    for (int i=0; i<offers.size(); ++i)
+    {
+      Offer offer = (Offer)offers.get(i);
+      offer.future.cancel();
+      offer.accepted.cancel();
     }
   }
 
   public void _kill()
   {
+    Backpressure bp = this.backpressure;
+    if (bp != null) cancel(bp);
+
+    // lock-free queue is drained directly since the actor is not running
+    if (queue.lockFree())
+    {
+      while (true)
+      {
+        Mail future = queue.get();
+        if (future == null) break;
+        future.cancel();
+      }
+      return;
+    }
+
     // get/reset the pending queue
     Queue queue = null;
     synchronized (lock)
@@ -317,7 +811,7 @@ public class Actor
     // cancel all pending messages
     while (true)
     {
-      Future future = queue.get();
+      Mail future = queue.get();
       if (future == null) break;
       future.cancel();
     }
@@ -328,16 +822,45 @@ public class Actor
     return FanObj.toImmutable(obj);
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Backpressure
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Backpressure tracks producers waiting for space in a full queue.
+   * It is only allocated the first time a producer has to wait, and
+   * the actor's thread only checks the volatile waiting flag after
+   * each dequeue.  All other fields are guarded by its monitor.
+   */
+  static final class Backpressure
+  {
+    volatile boolean waiting;                 // blocked > 0 or pending non-empty
+    int blocked;                              // threads blocked in sendBlocking
+    final LinkedList pending = new LinkedList();  // sendAsync Offers in order
+  }
+
+  /**
+   * Offer is a message from sendAsync waiting for space.
+   */
+  static final class Offer
+  {
+    Offer(ActorFuture f, ActorFuture a) { future = f; accepted = a; }
+    final ActorFuture future;    // future for the message itself
+    final ActorFuture accepted;  // completed with future once queued
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Queue
 //////////////////////////////////////////////////////////////////////////
 
   static class Queue
   {
-    public ActorFuture get()
+    boolean lockFree() { return false; }
+
+    public Mail get()
     {
       if (head == null) return null;
-      ActorFuture f = head;
+      Mail f = head;
       head = f.next;
       if (head == null) tail = null;
       f.next = null;
@@ -345,7 +868,7 @@ public class Actor
       return f;
     }
 
-    public void add(ActorFuture f)
+    public void add(Mail f)
     {
       if (tail == null) { head = tail = f; f.next = null; }
       else { tail.next = f; tail = f; }
@@ -362,7 +885,7 @@ public class Actor
     {
       int num = 0;
       int max = 50;
-      for (ActorFuture x = head; x != null; x = x.next)
+      for (Mail x = head; x != null; x = x.next)
       {
         if (num < max) out.print("  ").printLine(x.msg);
         num++;
@@ -370,65 +893,277 @@ public class Actor
       if (num > max) out.print("  " + (num-max) + " more messages...");
     }
 
-    ActorFuture head, tail;
-    int size;
-    int peak;
+    Mail head, tail;
+    volatile int size;
+    volatile int peak;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// MpscQueue
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * MpscQueue is a lock-free multi-producer, single-consumer queue used
+   * by actors which don't coalesce.  It is Dmitry Vyukov's intrusive
+   * MPSC queue linked by Mail.next with a stub node.  Producers
+   * first reserve a slot by incrementing size (which keeps the maxQueue
+   * check exact), then atomically swap themselves in as the tail and
+   * link the previous tail to themselves.  Only the actor's own thread
+   * (or _kill once the actor will never run again) calls get.
+   */
+  static final class MpscQueue extends Queue
+  {
+    MpscQueue()
+    {
+      head = last = stub;
+    }
+
+    boolean lockFree() { return true; }
+
+    /**
+     * Reserve a slot for one message if size is less than max.
+     */
+    boolean reserve(int max)
+    {
+      while (true)
+      {
+        int s = size;
+        if (s >= max) return false;
+        if (SIZE.compareAndSet(this, s, s+1))
+        {
+          while (true)
+          {
+            int p = peak;
+            if (s+1 <= p || PEAK.compareAndSet(this, p, s+1)) break;
+          }
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Link a message into the queue; caller must reserve first.
+     */
+    void push(Mail f)
+    {
+      f.next = null;
+      Mail prev = (Mail)LAST.getAndSet(this, f);
+      prev.next = f;
+    }
+
+    public void add(Mail f)
+    {
+      reserve(Integer.MAX_VALUE);
+      push(f);
+    }
+
+    public Mail get()
+    {
+      while (true)
+      {
+        Mail h = head;
+        Mail n = h.next;
+
+        // skip over the stub node
+        if (h == stub)
+        {
+          if (n == null)
+          {
+            if (size == 0) return null;
+            Thread.yield(); // reserved but not linked yet
+            continue;
+          }
+          head = h = n;
+          n = n.next;
+        }
+
+        // common case, we have a successor
+        if (n != null) return take(h, n);
+
+        // producer swapped in a new tail but has not linked it yet
+        if (h != last) { Thread.yield(); continue; }
+
+        // h is the last node, push the stub behind it so we can take h
+        push(stub);
+        n = h.next;
+        if (n != null) return take(h, n);
+        Thread.yield();
+      }
+    }
+
+    private Mail take(Mail h, Mail n)
+    {
+      head = n;
+      h.next = null;
+      SIZE.decrementAndGet(this);
+      return h;
+    }
+
+    void dump(fan.sys.OutStream out)
+    {
+      int num = 0;
+      int max = 50;
+      for (Mail x = head; x != null; x = x.next)
+      {
+        if (x == stub) continue;
+        if (num < max) out.print("  ").printLine(x.msg);
+        num++;
+      }
+      if (num > max) out.print("  " + (num-max) + " more messages...");
+    }
+
+    static final AtomicIntegerFieldUpdater SIZE = AtomicIntegerFieldUpdater.newUpdater(Queue.class, "size");
+    static final AtomicIntegerFieldUpdater PEAK = AtomicIntegerFieldUpdater.newUpdater(Queue.class, "peak");
+    static final AtomicReferenceFieldUpdater LAST = AtomicReferenceFieldUpdater.newUpdater(MpscQueue.class, Mail.class, "last");
+
+    final Mail stub = new Mail.NoReply(null);  // placeholder node
+    volatile Mail last;                        // producer side tail
   }
 
 //////////////////////////////////////////////////////////////////////////
 // CoalescingQueue
 //////////////////////////////////////////////////////////////////////////
 
+  /**
+   * CoalescingQueue indexes pending messages by key.  Each message's
+   * key and its hash are computed once and cached on the ActorFuture;
+   * the index is an intrusive hash table chained by ActorFuture.keyNext
+   * so that coalescing is a single bucket lookup, and removal on dequeue
+   * is an identity unlink which never calls back into toKey or hash.
+   */
   static class CoalescingQueue extends Queue
   {
     CoalescingQueue(Func toKeyFunc, Func coalesceFunc)
     {
       this.toKeyFunc = toKeyFunc;
       this.coalesceFunc = coalesceFunc;
+      this.table = new ActorFuture[16];
     }
 
-    public ActorFuture get()
+    public Mail get()
     {
-      ActorFuture f = super.get();
-      if (f != null)
+      Mail m = super.get();
+      if (m instanceof ActorFuture && ((ActorFuture)m).key != null) unindex((ActorFuture)m);
+      return m;
+    }
+
+    public void add(Mail m)
+    {
+      // never coalesce into a message which has no future to share
+      if (m instanceof ActorFuture)
       {
         try
         {
-          Object key = toKey(f.msg);
-          if (key != null) pending.remove(key);
+          ActorFuture f = (ActorFuture)m;
+          if (keyOf(f) != null) index(f);
         }
         catch (Throwable e)
         {
           e.printStackTrace();
         }
       }
-      return f;
+      super.add(m);
     }
 
-    public void add(ActorFuture f)
+    public ActorFuture coalesce(ActorFuture incoming)
     {
-      try
+      Object key = keyOf(incoming);
+      if (key == null) return null;
+
+      ActorFuture orig = lookup(key, incoming.keyHash);
+      if (orig == null) return null;
+
+      orig.msg = coalesce(orig.msg, incoming.msg);
+      return orig;
+    }
+
+    /**
+     * Get the key for the future's message computing it only once.
+     */
+    private Object keyOf(ActorFuture f)
+    {
+      if (f.keyed) return f.key;
+      f.keyed = true;
+      Object key = toKey(f.msg);
+      if (key != null)
       {
-        Object key = toKey(f.msg);
-        if (key != null) pending.put(key, f);
+        int h = key.hashCode();
+        f.keyHash = h ^ (h >>> 16);
+        f.key = key;
       }
-      catch (Throwable e)
+      return key;
+    }
+
+    private ActorFuture lookup(Object key, int hash)
+    {
+      for (ActorFuture x = table[hash & (table.length-1)]; x != null; x = x.keyNext)
+        if (x.keyHash == hash && (x.key == key || x.key.equals(key))) return x;
+      return null;
+    }
+
+    /**
+     * Add future to the index, replacing any pending future
+     * with the same key (last one added wins).
+     */
+    private void index(ActorFuture f)
+    {
+      int i = f.keyHash & (table.length-1);
+      ActorFuture prev = null;
+      for (ActorFuture x = table[i]; x != null; prev = x, x = x.keyNext)
       {
-        e.printStackTrace();
+        if (x.keyHash == f.keyHash && (x.key == f.key || x.key.equals(f.key)))
+        {
+          f.keyNext = x.keyNext;
+          if (prev == null) table[i] = f; else prev.keyNext = f;
+          x.keyNext = null;
+          return;
+        }
       }
-      super.add(f);
+      f.keyNext = table[i];
+      table[i] = f;
+      if (++count > table.length - (table.length >>> 2)) resize();
     }
 
-    public ActorFuture coalesce(ActorFuture incoming)
+    /**
+     * Remove future from the index if it is still indexed.
+     */
+    private void unindex(ActorFuture f)
     {
-      Object key = toKey(incoming.msg);
-      if (key == null) return null;
-
-      ActorFuture orig = (ActorFuture)pending.get(key);
-      if (orig == null) return null;
+      int i = f.keyHash & (table.length-1);
+      ActorFuture prev = null;
+      for (ActorFuture x = table[i]; x != null; prev = x, x = x.keyNext)
+      {
+        if (x == f)
+        {
+          if (prev == null) table[i] = f.keyNext; else prev.keyNext = f.keyNext;
+          f.keyNext = null;
+          count--;
+          return;
+        }
+      }
+    }
 
-      orig.msg = coalesce(orig.msg, incoming.msg);
-      return orig;
+    /**
+     * Double the table size using the cached hashes.
+     */
+    private void resize()
+    {
+      ActorFuture[] old = table;
+      ActorFuture[] temp = new ActorFuture[old.length * 2];
+      int mask = temp.length - 1;
+      for (int i=0; i<old.length; ++i)
+      {
+        ActorFuture x = old[i];
+        while (x != null)
+        {
+          ActorFuture next = x.keyNext;
+          int j = x.keyHash & mask;
+          x.keyNext = temp[j];
+          temp[j] = x;
+          x = next;
+        }
+      }
+      table = temp;
     }
 
     private Object toKey(Object obj)
@@ -441,8 +1176,101 @@ public class Actor
       return coalesceFunc == null ? incoming : coalesceFunc.call(orig, incoming);
     }
 
-    Func toKeyFunc, coalesceFunc;
-    HashMap pending = new HashMap();
+    final Func toKeyFunc, coalesceFunc;
+    private ActorFuture[] table;   // key index chained by keyNext
+    private int count;             // number of indexed futures
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// LaneQueue
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * LaneQueue is a priority queue with a fixed number of FIFO lanes.
+   * Each lane is a normal Queue or CoalescingQueue, and get always
+   * drains the highest priority lane first.  Like CoalescingQueue it
+   * is only accessed while holding the actor's lock.
+   */
+  static class LaneQueue extends Queue
+  {
+    LaneQueue(ActorPool pool, int n, Func toPriorityFunc, boolean coalescing, Func toKeyFunc, Func coalesceFunc)
+    {
+      this.pool = pool;
+      this.toPriorityFunc = toPriorityFunc;
+      this.lanes = new Queue[n];
+      for (int i=0; i<n; ++i)
+        lanes[i] = coalescing ? new CoalescingQueue(toKeyFunc, coalesceFunc) : new Queue();
+    }
+
+    public Mail get()
+    {
+      if (size == 0) return null;
+      for (int i=lanes.length-1; i>=0; --i)
+      {
+        Mail f = lanes[i].get();
+        if (f != null) { size--; return f; }
+      }
+      return null;
+    }
+
+    public void add(Mail f)
+    {
+      lanes[laneOf(f)].add(f);
+      size++;
+      if (size > peak) peak = size;
+    }
+
+    public ActorFuture coalesce(ActorFuture f)
+    {
+      return lanes[laneOf(f)].coalesce(f);
+    }
+
+    /**
+     * Get the message's lane, calling the priority func only the
+     * first time so a coalesce followed by an add calls it once.
+     */
+    private int laneOf(Mail f)
+    {
+      int lane = f.lane - 1;
+      if (lane < 0) f.lane = (lane = toLane(f.msg)) + 1;
+      return lane;
+    }
+
+    /**
+     * Map message to lane index clamped to our range; if the
+     * priority func raises an exception, use the lowest lane.
+     */
+    private int toLane(Object msg)
+    {
+      try
+      {
+        long p = ((Long)toPriorityFunc.call(msg)).longValue();
+        if (p <= 0L) return 0;
+        if (p >= lanes.length) return lanes.length-1;
+        return (int)p;
+      }
+      catch (Throwable e)
+      {
+        pool.err("Actor toPriority failed", e);
+        return 0;
+      }
+    }
+
+    void dump(fan.sys.OutStream out)
+    {
+      for (int i=lanes.length-1; i>=0; --i)
+      {
+        if (lanes[i].size == 0) continue;
+        out.printLine("  -- lane " + i + " (" + lanes[i].size + ")");
+        lanes[i].dump(out);
+      }
+    }
+
+    static final int maxLanes = 16;
+
+    final ActorPool pool;
+    final Func toPriorityFunc;
+    final Queue[] lanes;
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -500,11 +1328,19 @@ public class Actor
   final Context context;                 // mutable world state of actor
   private ActorPool pool;                // pooled controller
   private Func receive;                  // func to invoke on receive or null
+  private Func receiveBatch;             // func to invoke on receiveBatch or null
+  private int maxBatchSize;              // max msgs per receiveBatch or zero
+  private Mail[] batch;                  // reused buffer for batch dispatch
   private Object lock = new Object();    // lock for message queue
   private Queue queue;                   // message queue linked list
   private Object curMsg = idleMsg;       // if currently processing a message
-  private boolean submitted = false;     // is actor submitted to thread pool
+  private final AtomicBoolean submitted = new AtomicBoolean(); // is actor submitted to thread pool
   private int receiveCount;              // total number of messages received
   private long receiveTicks;             // total ticks spend in receive
+  private long submitTicks;              // nanoTime when last submitted to pool
+  volatile boolean affine;               // prefer lastThread when submitted
+  Thread lastThread;                     // thread which last ran us if affine
+  private volatile Backpressure backpressure; // producers waiting on full queue
+  private volatile Histogram receiveTime; // receive histogram or null
 }
 
@@ -5,11 +5,16 @@
 // History:
 //   26 Mar 09  Brian Frank  Creation
 //   24 Apr 20  Brian Frank  Make Future abstract
+//   17 Oct 26  agent  Lock-free state machine
 //
 package fan.concurrent;
 
 import fan.sys.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.ArrayList;
 
 /**
@@ -30,7 +35,7 @@ public final class ActorFuture
 
   ActorFuture(Object msg)
   {
-    this.msg   = msg;
+    super(msg);
     this.state = PENDING;
   }
 
@@ -57,6 +62,7 @@ public final class ActorFuture
     switch(state)
     {
       case PENDING:     return FutureStatus.pending;
+      case COMPLETING:  return FutureStatus.pending;
       case DONE_OK:     return FutureStatus.ok;
       case DONE_ERR:    return FutureStatus.err;
       case DONE_CANCEL: return FutureStatus.cancelled;
@@ -66,102 +72,24 @@ public final class ActorFuture
 
   public final Object get(Duration timeout)
   {
-    Object r = null;
-    try
-    {
-      synchronized (this)
-      {
-        // wait until we enter a done state, the only notifies
-        // on this object should be from cancel, complete, or completeErr
-        if (timeout == null)
-        {
-          // wait forever until done
-          while ((state & DONE) == 0) wait();
-        }
-        else
-        {
-          // if not done, then wait with timeout and then
-          // if still not done throw a timeout exception
-          if ((state & DONE) == 0)
-          {
-            // compute deadline in millis
-            long deadline = Duration.nowMillis() + timeout.millis();
-
-            // loop until we are done or our deadline has passed
-            while ((state & DONE) == 0)
-            {
-              long left = deadline - Duration.nowMillis();
-              if (left <= 0L) break;
-              wait(left);
-            }
-
-            // if we still aren't done this is a timeout
-            if ((state & DONE) == 0) throw TimeoutErr.make("Future.get timed out");
-          }
-        }
+    int state = awaitDone(timeout);
 
-        // if canceled throw CancelErr
-        if (state == DONE_CANCEL)
-          throw CancelledErr.make("Future cancelled");
+    // if canceled throw CancelErr
+    if (state == DONE_CANCEL)
+      throw CancelledErr.make("Future cancelled");
 
-        // if error was raised, raise it to caller
-        if (state == DONE_ERR)
-          throw ((Err)result).rebase();
-
-        // assign result to local variable for return
-        r = result;
-      }
-    }
-    catch (InterruptedException e)
-    {
-      throw InterruptedErr.make(e);
-    }
+    // if error was raised, raise it to caller
+    if (state == DONE_ERR)
+      throw ((Err)result).rebase();
 
     // ensure immutable or safe copy
-    return Actor._safe(r);
+    return Actor._safe(result);
   }
 
   public final Future waitFor(Duration timeout)
   {
-    try
-    {
-      synchronized (this)
-      {
-        // wait until we enter a done state, the only notifies
-        // on this object should be from cancel, complete, or completeErr
-        if (timeout == null)
-        {
-          // wait forever until done
-          while ((state & DONE) == 0) wait();
-        }
-        else
-        {
-          // if not done, then wait with timeout and then
-          // if still not done throw a timeout exception
-          if ((state & DONE) == 0)
-          {
-            // compute deadline in millis
-            long deadline = Duration.nowMillis() + timeout.millis();
-
-            // loop until we are done or our deadline has passed
-            while ((state & DONE) == 0)
-            {
-              long left = deadline - Duration.nowMillis();
-              if (left <= 0L) break;
-              wait(left);
-            }
-
-            // if we still aren't done this is a timeout
-            if ((state & DONE) == 0) throw TimeoutErr.make("Future.get timed out");
-          }
-        }
-        return this;
-      }
-    }
-    catch (InterruptedException e)
-    {
-      throw InterruptedErr.make(e);
-    }
+    awaitDone(timeout);
+    return this;
   }
 
   public final Err err()
@@ -176,6 +104,11 @@ public final class ActorFuture
   }
 
   public final Future then(Func onOk, Func onErr)
+  {
+    return thenAsync(onOk, onErr, null);
+  }
+
+  public final Future thenBlocking(Func onOk, Func onErr)
   {
     waitFor(null);
     Object chain = null;
@@ -203,49 +136,71 @@ public final class ActorFuture
     }
   }
 
-  public final void cancel()
+  public final Future thenAsync(Func onOk, Func onErr, ActorPool pool)
+  {
+    onOk = (Func)onOk.toImmutable();
+    if (onErr != null) onErr = (Func)onErr.toImmutable();
+    Then then = new Then(onOk, onErr, pool);
+    onDone(then);
+    return then.result;
+  }
+
+  public final Future orTimeout(Duration timeout, ActorPool pool)
   {
-    ArrayList wd;
-    synchronized (this)
+    final ActorFuture result = new ActorFuture(null);
+    final Mirror mirror = new Mirror(result);
+    mirror.timer = pool.schedule(timeout.ticks(), new Scheduler.Work()
     {
-      if ((state & DONE) == 0) state = DONE_CANCEL;
-      msg = result = null;  // allow gc
-      notifyAll();
-      wd = whenDone; whenDone = null;
-    }
-    sendWhenDone(wd);
+      public void work()
+      {
+        if (mirror.once.compareAndSet(false, true))
+          result.completeErr(TimeoutErr.make("Future timed out"));
+      }
+      public void cancel()
+      {
+        // pool stopped before the timeout, so the timer will never fire
+        if (mirror.once.compareAndSet(false, true))
+          result.cancel();
+      }
+    });
+    onDone(mirror);
+    return result;
+  }
+
+  public final void cancel()
+  {
+    msg = null;  // allow gc
+    if (STATE.compareAndSet(this, PENDING, DONE_CANCEL)) finish();
+
+    // if pending in scheduler, then remove it from the timing wheel
+    Scheduler.Node t = timer;
+    if (t != null) { timer = null; t.cancel(); }
   }
 
   public final Future complete(Object r)
   {
     r = Actor._safe(r);
-    ArrayList wd;
-    synchronized (this)
+    if (!STATE.compareAndSet(this, PENDING, COMPLETING))
     {
       if (state == DONE_CANCEL) return this;
-      if (state != PENDING) throw Err.make("Future already complete");
-      state = DONE_OK;
-      result = r;
-      notifyAll();
-      wd = whenDone; whenDone = null;
+      throw Err.make("Future already complete");
     }
-    sendWhenDone(wd);
+    result = r;
+    state = DONE_OK;
+    finish();
     return this;
   }
 
   public final Future completeErr(Err e)
   {
-    ArrayList wd;
-    synchronized (this)
+    if (!STATE.compareAndSet(this, PENDING, COMPLETING))
     {
       if (state == DONE_CANCEL) return this;
-      if (state != PENDING) throw Err.make("Future already complete");
-      state = DONE_ERR;
-      result = e;
-      notifyAll();
-      wd = whenDone; whenDone = null;
+      throw Err.make("Future already complete");
     }
-    sendWhenDone(wd);
+    result = e;
+    state = DONE_ERR;
+    finish();
     return this;
   }
 
@@ -255,41 +210,177 @@ public final class ActorFuture
   }
 
 //////////////////////////////////////////////////////////////////////////
-// When Done
+// Waiters
 //////////////////////////////////////////////////////////////////////////
 
-  final void sendWhenDone(Actor a, ActorFuture f)
+  /**
+   * Block until this future enters a done state and return the state.
+   * Threads waiting on a pending future push themselves onto the waiters
+   * stack and park; the completing thread unparks them in finish.
+   */
+  private int awaitDone(Duration timeout)
   {
-    // if already done, then set immediate flag
-    // otherwise add to our when done list
-    boolean immediate = false;
-    synchronized (this)
+    int s = state;
+    if ((s & DONE) != 0) return s;
+
+    long deadline = timeout == null ? 0L : System.nanoTime() + timeout.ticks();
+    Waiter node = null;
+    boolean queued = false;
+    while (true)
     {
-      if (isDone()) immediate = true;
+      s = state;
+      if ((s & DONE) != 0)
+      {
+        if (node != null) node.item = null;
+        return s;
+      }
+
+      if (Thread.interrupted())
+      {
+        if (queued) removeWaiter(node);
+        throw InterruptedErr.make("Future wait interrupted");
+      }
+
+      if (node == null)
+      {
+        node = new Waiter(Thread.currentThread());
+      }
+      else if (!queued)
+      {
+        // if push fails we are already done
+        queued = push(node);
+      }
+      else if (timeout == null)
+      {
+        LockSupport.park(this);
+      }
       else
       {
-        if (whenDone == null) whenDone = new ArrayList();
-        whenDone.add(new WhenDone(a, f));
+        long left = deadline - System.nanoTime();
+        if (left <= 0L)
+        {
+          removeWaiter(node);
+          throw TimeoutErr.make("Future.get timed out");
+        }
+        LockSupport.parkNanos(this, left);
       }
     }
+  }
 
-    // if immediate we are already done so enqueue immediately
-    if (immediate)
+  /**
+   * Push node onto the waiters stack or return false if done.
+   */
+  private boolean push(Waiter node)
+  {
+    while (true)
     {
-      try { a._enqueueWhenDone(f); }
-      catch (Throwable e) { e.printStackTrace(); }
+      Waiter h = waiters;
+      if (h == DONE_WAITERS) return false;
+      node.next = h;
+      if (WAITERS.compareAndSet(this, h, node)) return true;
     }
   }
 
-  static void sendWhenDone(ArrayList list)
+  /**
+   * Unlink a thread which gave up waiting due to timeout or interrupt.
+   * Its node is marked by clearing item, then we unlink every cleared
+   * node; a race with another remover or a push restarts the traversal.
+   */
+  private void removeWaiter(Waiter node)
   {
-    if (list == null) return;
-    for (int i=0; i<list.size(); ++i)
+    node.item = null;
+    retry:
+    while (true)
     {
-      WhenDone wd = (WhenDone)list.get(i);
-      try { wd.actor._enqueueWhenDone(wd.future); }
-      catch (Throwable e) { e.printStackTrace(); }
+      Waiter pred = null;
+      for (Waiter q = waiters, s; q != null && q != DONE_WAITERS; q = s)
+      {
+        s = q.next;
+        if (q.item != null) pred = q;
+        else if (pred != null)
+        {
+          pred.next = s;
+          if (pred.item == null) continue retry;
+        }
+        else if (!WAITERS.compareAndSet(this, q, s)) continue retry;
+      }
+      return;
+    }
+  }
+
+  /**
+   * Called exactly once after transitioning to a done state.  Swap
+   * out the waiters stack, then unpark threads and fire the when done
+   * entries in the order they were registered.
+   */
+  private void finish()
+  {
+    Waiter h = (Waiter)WAITERS.getAndSet(this, DONE_WAITERS);
+    ArrayList wd = null;
+    for (Waiter q = h; q != null; q = q.next)
+    {
+      Object item = q.item;
+      if (item == null) continue;
+      q.item = null;
+      if (item instanceof Thread) LockSupport.unpark((Thread)item);
+      else
+      {
+        if (wd == null) wd = new ArrayList();
+        wd.add(item);
+      }
     }
+
+    if (wd == null) return;
+    for (int i=wd.size()-1; i>=0; --i) fireWhenDone(wd.get(i));
+  }
+
+  /**
+   * Node in the Treiber stack of waiters: item is a parked Thread,
+   * a WhenDone, or a Callback.
+   */
+  static final class Waiter
+  {
+    Waiter(Object item) { this.item = item; }
+    volatile Object item;
+    volatile Waiter next;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// When Done
+//////////////////////////////////////////////////////////////////////////
+
+  final void sendWhenDone(Actor a, ActorFuture f)
+  {
+    // if already done then enqueue immediately
+    // otherwise push onto our waiters stack
+    WhenDone wd = new WhenDone(a, f);
+    if (!push(new Waiter(wd))) fireWhenDone(wd);
+  }
+
+  /**
+   * Register callback to be invoked once this future is done; if
+   * already done then the callback is invoked immediately.
+   */
+  final void onDone(Callback cb)
+  {
+    if (!push(new Waiter(cb))) fireWhenDone(cb);
+  }
+
+  private void fireWhenDone(Object x)
+  {
+    try
+    {
+      if (x instanceof WhenDone)
+      {
+        WhenDone wd = (WhenDone)x;
+        wd.actor._enqueueWhenDone(wd.future);
+      }
+      else
+      {
+        ((Callback)x).done(this);
+      }
+    }
+    catch (Throwable e) { e.printStackTrace(); }
   }
 
   static class WhenDone
@@ -299,21 +390,222 @@ public final class ActorFuture
     ActorFuture future;
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Composition
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Map a future to its ActorFuture or throw ArgErr.
+   */
+  static ActorFuture toActorFuture(Future f)
+  {
+    if (f instanceof ActorFuture) return (ActorFuture)f;
+    Future wraps = f.wraps();
+    if (wraps instanceof ActorFuture) return (ActorFuture)wraps;
+    throw ArgErr.make("Only actor Futures supported");
+  }
+
+  private static ActorFuture[] toActorFutures(List list)
+  {
+    ActorFuture[] futures = new ActorFuture[list.sz()];
+    for (int i=0; i<futures.length; ++i)
+      futures[i] = toActorFuture((Future)list.get(i));
+    return futures;
+  }
+
+  static Future makeAllOf(List list)
+  {
+    ActorFuture[] futures = toActorFutures(list);
+    ActorFuture result = new ActorFuture(null);
+    if (futures.length == 0) return result.complete(List.make(Sys.ObjType.toNullable(), 0).toImmutable());
+    AllOf all = new AllOf(futures, result);
+    for (int i=0; i<futures.length; ++i) futures[i].onDone(all);
+    return result;
+  }
+
+  static Future makeAnyOf(List list)
+  {
+    ActorFuture[] futures = toActorFutures(list);
+    if (futures.length == 0) throw ArgErr.make("Futures list is empty");
+    ActorFuture result = new ActorFuture(null);
+    Mirror mirror = new Mirror(result);
+    for (int i=0; i<futures.length; ++i) futures[i].onDone(mirror);
+    return result;
+  }
+
+  /**
+   * Block until all the futures are done, in any state.  We
+   * register one countdown callback on every future so that
+   * we only park the calling thread once.
+   */
+  static void waitForAllDone(List list, Duration timeout)
+  {
+    ActorFuture[] futures = toActorFutures(list);
+    final ActorFuture latch = new ActorFuture(null);
+    final AtomicInteger remaining = new AtomicInteger(futures.length + 1);
+    Callback countdown = new Callback()
+    {
+      public void done(ActorFuture f)
+      {
+        if (remaining.decrementAndGet() == 0) latch.complete(null);
+      }
+    };
+    for (int i=0; i<futures.length; ++i) futures[i].onDone(countdown);
+    countdown.done(null);
+    latch.waitFor(timeout);
+  }
+
+  /**
+   * Callback invoked once when a future is done.
+   */
+  interface Callback
+  {
+    void done(ActorFuture f);
+  }
+
+  /**
+   * Then invokes the callbacks registered by thenAsync either
+   * on the completing thread or on a thread in an ActorPool.
+   */
+  static final class Then implements Callback, ThreadPool.Work
+  {
+    Then(Func onOk, Func onErr, ActorPool pool)
+    {
+      this.onOk   = onOk;
+      this.onErr  = onErr;
+      this.pool   = pool;
+      this.result = new ActorFuture(null);
+    }
+
+    public void done(ActorFuture f)
+    {
+      this.source = f;
+      if (pool == null) _work();
+      else pool.execute(this);
+    }
+
+    public void _work()
+    {
+      try
+      {
+        Object chain = null;
+        switch (source.state)
+        {
+          case DONE_OK:
+            chain = onOk.call(source.result);
+            break;
+          case DONE_ERR:
+            if (onErr != null) chain = onErr.call(source.result);
+            else { result.completeErr((Err)source.result); return; }
+            break;
+          case DONE_CANCEL:
+            if (onErr != null) chain = onErr.call(CancelledErr.make("Future cancelled"));
+            else { result.cancel(); return; }
+            break;
+        }
+        result.complete(chain);
+      }
+      catch (Throwable e)
+      {
+        result.completeErr(Err.make(e));
+      }
+    }
+
+    public void _kill() { result.cancel(); }
+
+    public String toString() { return "ActorFuture.then"; }
+
+    final Func onOk, onErr;
+    final ActorPool pool;
+    final ActorFuture result;
+    ActorFuture source;
+  }
+
+  /**
+   * Mirror completes its result with the state of the first
+   * future to complete; used by anyOf and orTimeout.
+   */
+  static final class Mirror implements Callback
+  {
+    Mirror(ActorFuture result) { this.result = result; }
+
+    public void done(ActorFuture f)
+    {
+      if (!once.compareAndSet(false, true)) return;
+      Scheduler.Node t = timer;
+      if (t != null) t.cancel();
+      switch (f.state)
+      {
+        case DONE_OK:     result.complete(f.result); break;
+        case DONE_ERR:    result.completeErr((Err)f.result); break;
+        case DONE_CANCEL: result.cancel(); break;
+      }
+    }
+
+    final ActorFuture result;
+    final AtomicBoolean once = new AtomicBoolean();
+    volatile Scheduler.Node timer;
+  }
+
+  /**
+   * AllOf completes its result with the list of results once every
+   * future is ok, or with the first error or cancellation.
+   */
+  static final class AllOf implements Callback
+  {
+    AllOf(ActorFuture[] futures, ActorFuture result)
+    {
+      this.futures = futures;
+      this.result = result;
+      this.remaining = new AtomicInteger(futures.length);
+    }
+
+    public void done(ActorFuture f)
+    {
+      if (f.state != DONE_OK)
+      {
+        if (!once.compareAndSet(false, true)) return;
+        if (f.state == DONE_ERR) result.completeErr((Err)f.result);
+        else result.completeErr(CancelledErr.make("Future cancelled"));
+        return;
+      }
+
+      if (remaining.decrementAndGet() != 0) return;
+      if (!once.compareAndSet(false, true)) return;
+      List list = List.make(Sys.ObjType.toNullable(), futures.length);
+      for (int i=0; i<futures.length; ++i) list.add(futures[i].result);
+      result.complete(list.toImmutable());
+    }
+
+    final ActorFuture[] futures;
+    final ActorFuture result;
+    final AtomicInteger remaining;
+    final AtomicBoolean once = new AtomicBoolean();
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Fields
 //////////////////////////////////////////////////////////////////////////
 
   static final int PENDING     = 0x00;
+  static final int COMPLETING  = 0x10;
   static final int DONE        = 0x0f;
   static final int DONE_CANCEL = 0x1f;
   static final int DONE_OK     = 0x2f;
   static final int DONE_ERR    = 0x4f;
 
-  Object msg;                  // message send to Actor
-  ActorFuture next;            // linked list in Actor
-  private volatile int state;  // processing state of message
-  private Object result;       // result or exception of processing
-  private ArrayList whenDone;  // list of messages to deliver when done
+  static final Waiter DONE_WAITERS = new Waiter(null);
+  static final AtomicIntegerFieldUpdater STATE = AtomicIntegerFieldUpdater.newUpdater(ActorFuture.class, "state");
+  static final AtomicReferenceFieldUpdater WAITERS = AtomicReferenceFieldUpdater.newUpdater(ActorFuture.class, Waiter.class, "waiters");
+
+  Scheduler.Node timer;        // scheduled node if sendLater is pending
+  Object key;                  // cached coalescing key or null
+  int keyHash;                 // cached spread hash of key
+  boolean keyed;               // has key been computed
+  ActorFuture keyNext;         // chain in CoalescingQueue index
+  private volatile int state;        // processing state of message
+  private Object result;             // result or exception, published by state
+  private volatile Waiter waiters;   // stack of parked threads and when done
 
 }
 
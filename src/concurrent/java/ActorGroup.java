@@ -0,0 +1,156 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ActorGroup keeps its shards in an array so routing is a hash mix
+ * and an index without touching the Fantom list.  Keys are mapped with
+ * a multiply-shift range reduction rather than modulo.
+ */
+public final class ActorGroup extends FanObj
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Construction
+//////////////////////////////////////////////////////////////////////////
+
+  public static ActorGroup make(List actors)
+  {
+    ActorGroup self = new ActorGroup();
+    make$(self, actors);
+    return self;
+  }
+
+  public static void make$(ActorGroup self, List actors)
+  {
+    if (actors.isEmpty()) throw ArgErr.make("ActorGroup requires at least one actor");
+    self.init((List)actors.toImmutable());
+  }
+
+  public static ActorGroup makeShards(ActorPool pool, long size, Func receive)
+  {
+    ActorGroup self = new ActorGroup();
+    makeShards$(self, pool, size, receive);
+    return self;
+  }
+
+  public static void makeShards$(ActorGroup self, ActorPool pool, long size, Func receive)
+  {
+    if (size < 1) throw ArgErr.make("ActorGroup size must be >= 1, not " + size);
+    receive = (Func)receive.toImmutable();
+    List actors = List.make(Actor.typeof$(), size);
+    for (long i=0; i<size; ++i)
+    {
+      // only actors we create are marked affine, since caller
+      // passed actors may be scheduled for other purposes too
+      Actor a = Actor.make(pool, receive);
+      a.affine = true;
+      actors.add(a);
+    }
+    self.init((List)actors.toImmutable());
+  }
+
+  private void init(List list)
+  {
+    this.list = list;
+    this.shards = new Actor[list.sz()];
+    for (int i=0; i<shards.length; ++i)
+      shards[i] = (Actor)list.get(i);
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Obj
+//////////////////////////////////////////////////////////////////////////
+
+  public Type typeof() { return typeof$(); }
+
+  public static Type typeof$()
+  {
+    if (type == null) type = Type.find("concurrent::ActorGroup");
+    return type;
+  }
+  private static Type type;
+
+  public String toStr() { return "ActorGroup [" + shards.length + " actors]"; }
+
+//////////////////////////////////////////////////////////////////////////
+// Access
+//////////////////////////////////////////////////////////////////////////
+
+  public List actors() { return list; }
+
+  public long size() { return shards.length; }
+
+  public Actor get(long index) { return (Actor)list.get(index); }
+
+//////////////////////////////////////////////////////////////////////////
+// Routing
+//////////////////////////////////////////////////////////////////////////
+
+  public Actor route(Object key)
+  {
+    return shards[indexOf(FanObj.hash(key), shards.length)];
+  }
+
+  public Actor leastLoaded()
+  {
+    Actor[] shards = this.shards;
+    Actor best = shards[0];
+    long bestSize = best.queueSize();
+    for (int i=1; i<shards.length && bestSize > 0; ++i)
+    {
+      long size = shards[i].queueSize();
+      if (size < bestSize) { best = shards[i]; bestSize = size; }
+    }
+    return best;
+  }
+
+  public Actor balance()
+  {
+    Actor[] shards = this.shards;
+    int n = shards.length;
+    if (n == 1) return shards[0];
+
+    // pick two distinct shards at random
+    ThreadLocalRandom rand = ThreadLocalRandom.current();
+    int i = rand.nextInt(n);
+    int j = rand.nextInt(n-1);
+    if (j >= i) ++j;
+
+    Actor a = shards[i], b = shards[j];
+    return b.queueSize() < a.queueSize() ? b : a;
+  }
+
+  public Future send(Object key, Object msg) { return route(key).send(msg); }
+
+  public Future sendBalanced(Object msg) { return balance().send(msg); }
+
+  /**
+   * Map a hash to [0, n).  The hash is mixed with the murmur3 finalizer
+   * so sequential and low entropy keys spread across every shard.
+   */
+  static int indexOf(long h, int n)
+  {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int)(((h & 0xffffffffL) * n) >>> 32);
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  private List list;         // immutable list of actors
+  private Actor[] shards;    // actors for fast indexing
+}
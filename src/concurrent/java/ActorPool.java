@@ -42,8 +42,18 @@ public class ActorPool
     if (self.maxQueue < 1) throw ArgErr.make("ActorPool.maxQueue mst be >= 1, not " + self.maxQueue);
     if (self.maxQueue > Integer.MAX_VALUE) throw ArgErr.make("ActorPool.maxQueue too big");
 
-    self.threadPool = new ThreadPool(self.name, (int)self.maxThreads);
+    if (self.maxThreads > Integer.MAX_VALUE) throw ArgErr.make("ActorPool.maxThreads too big");
+    if (self.workStealing && self.maxThreads > 0x7fff) throw ArgErr.make("ActorPool.maxThreads too big for workStealing");
+    if (self.workStealing && self.virtualThreads) throw ArgErr.make("ActorPool cannot use both workStealing and virtualThreads");
+
+    if (self.workStealing)
+      self.threadPool = new WorkStealingPool(self.name, (int)self.maxThreads);
+    else if (self.virtualThreads)
+      self.threadPool = new VirtualThreadPool(self.name, (int)self.maxThreads);
+    else
+      self.threadPool = new ThreadPool(self.name, (int)self.maxThreads);
     self.scheduler = new Scheduler(self.name);
+    self.metrics = new Metrics(self.histograms);
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -130,6 +140,11 @@ public class ActorPool
     return best;
   }
 
+  public final Map metrics()
+  {
+    return metrics.toMap(threadPool);
+  }
+
   final boolean hasPending()
   {
     return threadPool.hasPending();
@@ -140,9 +155,47 @@ public class ActorPool
     threadPool.submit(actor);
   }
 
+  /**
+   * Log an error raised on one of this pool's threads which
+   * has no future to report it to.
+   */
+  final void err(String msg, Throwable e)
+  {
+    Log.get("concurrent").err(msg + " [" + name + "]", e);
+  }
+
+  final void receiveErr(Actor actor, Object msg, Err err)
+  {
+    try
+    {
+      if (onErr != null) { onErr.call(actor, msg, err); return; }
+    }
+    catch (Throwable e)
+    {
+      err("ActorPool.onErr failed", e);
+    }
+    err("Actor sendNoReply msg failed: " + actor, err);
+  }
+
+  /**
+   * Run a non-actor work item on one of this pool's threads.
+   */
+  final void execute(ThreadPool.Work work)
+  {
+    threadPool.submit(work);
+  }
+
+  /**
+   * Schedule a work item on this pool's timer.
+   */
+  final Scheduler.Node schedule(long ticks, Scheduler.Work work)
+  {
+    return scheduler.schedule(ticks, work);
+  }
+
   final void schedule(Actor a, Duration d, ActorFuture f)
   {
-    scheduler.schedule(d.ticks(), new ScheduledWork(a, f));
+    f.timer = scheduler.schedule(d.ticks(), new ScheduledWork(a, f));
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -174,7 +227,7 @@ public class ActorPool
   {
     ScheduledWork(Actor a, ActorFuture f) { actor = a; future = f; }
     public String toString() { return "ScheduledWork msg=" + future.msg; }
-    public void work() { if (!future.isCancelled()) actor._enqueueLater(future); }
+    public void work() { future.timer = null; if (!future.isCancelled()) actor._enqueueLater(future); }
     public void cancel() { future.cancel(); }
     final Actor actor;
     final ActorFuture future;
@@ -200,8 +253,29 @@ public class ActorPool
   public void maxTimeBeforeYield$init(Func f, Duration x) { maxTimeBeforeYield = x; }
   public Duration maxTimeBeforeYield = Duration.oneSec;
 
-  private ThreadPool threadPool;
+  public Func onErr() { return onErr; }
+  public void onErr$init(Func f, Func x) { onErr = x == null ? null : (Func)x.toImmutable(); }
+  public Func onErr = null;
+
+  public boolean histograms() { return histograms; }
+  public void histograms$init(Func f, boolean x) { histograms = x; }
+  public boolean histograms = false;
+
+  public ActorInstrument instrument() { return instrument; }
+  public void instrument$init(Func f, ActorInstrument x) { instrument = x; }
+  public ActorInstrument instrument = null;
+
+  public boolean workStealing() { return workStealing; }
+  public void workStealing$init(Func f, boolean x) { workStealing = x; }
+  public boolean workStealing = false;
+
+  public boolean virtualThreads() { return virtualThreads; }
+  public void virtualThreads$init(Func f, boolean x) { virtualThreads = x; }
+  public boolean virtualThreads = false;
+
+  private WorkPool threadPool;
   private Scheduler scheduler;
+  Metrics metrics;
   volatile boolean killed;
 
 }
@@ -0,0 +1,51 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class AtomicAdderPeer
+{
+
+  public static AtomicAdderPeer make(AtomicAdder self)
+  {
+    return new AtomicAdderPeer();
+  }
+
+  public final void add(AtomicAdder self, long delta)
+  {
+    val.add(delta);
+  }
+
+  public final void increment(AtomicAdder self)
+  {
+    val.increment();
+  }
+
+  public final void decrement(AtomicAdder self)
+  {
+    val.decrement();
+  }
+
+  public final long sum(AtomicAdder self)
+  {
+    return val.sum();
+  }
+
+  public final void reset(AtomicAdder self)
+  {
+    val.reset();
+  }
+
+  public final long sumThenReset(AtomicAdder self)
+  {
+    return val.sumThenReset();
+  }
+
+  private final LongAdder val = new LongAdder();
+}
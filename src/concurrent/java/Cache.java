@@ -0,0 +1,750 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache stores its entries in a ConcurrentHashMap so reads never
+ * block.  Eviction uses W-TinyLFU: new entries enter a small LRU
+ * window, and entries which overflow the window are only admitted to
+ * the main segmented LRU if a count-min sketch estimates they are used
+ * more frequently than the main segment's victim.  All policy state is
+ * guarded by a lock acquired on writes; reads are recorded in lossy
+ * striped buffers which are drained under tryLock so that the read path
+ * never waits on the lock.
+ */
+public final class Cache extends FanObj
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Construction
+//////////////////////////////////////////////////////////////////////////
+
+  public static Cache make() { return make(null); }
+  public static Cache make(Func func)
+  {
+    Cache self = new Cache();
+    make$(self, func);
+    return self;
+  }
+
+  public static void make$(Cache self) { make$(self, null); }
+  public static void make$(Cache self, Func itBlock)
+  {
+    if (itBlock != null)
+    {
+      itBlock.enterCtor(self);
+      itBlock.call(self);
+      itBlock.exitCtor();
+    }
+    if (self.maxSize < 1) throw ArgErr.make("Cache.maxSize must be >= 1, not " + self.maxSize);
+    if (self.expireAfterWrite != null && self.expireAfterWrite.ticks() <= 0) throw ArgErr.make("Cache.expireAfterWrite must be > 0");
+    if (self.expireAfterAccess != null && self.expireAfterAccess.ticks() <= 0) throw ArgErr.make("Cache.expireAfterAccess must be > 0");
+    self.init();
+  }
+
+  private void init()
+  {
+    this.writeTtl     = expireAfterWrite == null ? 0L : expireAfterWrite.ticks();
+    this.accessTtl    = expireAfterAccess == null ? 0L : expireAfterAccess.ticks();
+    this.windowMax    = Math.max(1L, maxSize / 100L);
+    this.protectedMax = (maxSize - windowMax) * 80L / 100L;
+    this.data         = new ConcurrentHashMap((int)Math.min(maxSize, 1024L));
+    this.sketch       = new Sketch(maxSize);
+    this.readBuffers  = new ReadBuffer[numReadBuffers];
+    for (int i=0; i<numReadBuffers; ++i) readBuffers[i] = new ReadBuffer();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Obj
+//////////////////////////////////////////////////////////////////////////
+
+  public Type typeof() { return typeof$(); }
+
+  public static Type typeof$()
+  {
+    if (type == null) type = Type.find("concurrent::Cache");
+    return type;
+  }
+  private static Type type;
+
+//////////////////////////////////////////////////////////////////////////
+// Access
+//////////////////////////////////////////////////////////////////////////
+
+  public Object get(Object key)
+  {
+    Node n = lookup(key);
+    if (n == null) { misses.increment(); return null; }
+    hits.increment();
+    return n.val;
+  }
+
+  public Object getOrLoad(Object key, Func loader)
+  {
+    Node n = lookup(key);
+    if (n != null) { hits.increment(); return n.val; }
+    misses.increment();
+
+    // if another thread is already loading this key then wait on it
+    Load load = new Load();
+    Load prev = (Load)loading.putIfAbsent(key, load);
+    if (prev != null)
+    {
+      if (prev.thread == load.thread) throw Err.make("Recursive load: " + key);
+      return prev.future.get(null);
+    }
+
+    try
+    {
+      // double check now that we own the load
+      n = lookup(key);
+      if (n != null) { load.future.complete(n.val); return n.val; }
+
+      long start = System.nanoTime();
+      Object val;
+      try
+      {
+        val = loader.call(key);
+        if (val != null) set(key, val);
+      }
+      finally
+      {
+        loadTime.add(System.nanoTime() - start);
+      }
+      loads.increment();
+      load.future.complete(val);
+      return val;
+    }
+    catch (Throwable e)
+    {
+      Err err = Err.make(e);
+      loadErrs.increment();
+      load.future.completeErr(err);
+      throw err;
+    }
+    finally
+    {
+      loading.remove(key, load);
+    }
+  }
+
+  public boolean containsKey(Object key)
+  {
+    Node n = (Node)data.get(key);
+    return n != null && !isExpired(n, expires() ? System.nanoTime() : 0L);
+  }
+
+  public long size() { return data.size(); }
+
+  /**
+   * Lookup a live node and record the access or return null.
+   */
+  private Node lookup(Object key)
+  {
+    Node n = (Node)data.get(key);
+    if (n == null) return null;
+
+    if (expires())
+    {
+      long now = System.nanoTime();
+      if (isExpired(n, now))
+      {
+        if (lock.tryLock())
+        {
+          try { if (n.queue != DEAD) evictNode(n, true); }
+          finally { lock.unlock(); }
+        }
+        return null;
+      }
+      if (accessTtl > 0L) n.accessTime = now;
+    }
+
+    afterRead(n);
+    return n;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Modification
+//////////////////////////////////////////////////////////////////////////
+
+  public void set(Object key, Object val)
+  {
+    checkImmutable(val);
+    long weight = weigh(key, val);
+    lock.lock();
+    try
+    {
+      long now = expires() ? System.nanoTime() : 0L;
+      Node n = (Node)data.get(key);
+      if (n == null)
+      {
+        n = new Node(key, val, weight, now);
+        data.put(key, n);
+        onAdd(n);
+      }
+      else
+      {
+        onUpdate(n, val, weight, now);
+      }
+      maintain(now);
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public Object remove(Object key)
+  {
+    lock.lock();
+    try
+    {
+      Node n = (Node)data.get(key);
+      if (n == null) return null;
+      boolean expired = isExpired(n, expires() ? System.nanoTime() : 0L);
+      evictNode(n, expired);
+      return expired ? null : n.val;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public void clear()
+  {
+    lock.lock();
+    try
+    {
+      drainReads();
+      Node n;
+      while ((n = window.head) != null) removeNode(n);
+      while ((n = probation.head) != null) removeNode(n);
+      while ((n = protectedQ.head) != null) removeNode(n);
+      data.clear();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public Cache cleanup()
+  {
+    lock.lock();
+    try
+    {
+      maintain(expires() ? System.nanoTime() : 0L);
+    }
+    finally
+    {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  private long weigh(Object key, Object val)
+  {
+    if (weigher == null) return 1L;
+    long w = ((Long)weigher.call(key, val)).longValue();
+    if (w < 0L) throw ArgErr.make("Cache.weigher returned negative weight: " + w);
+    return w;
+  }
+
+  private static Object checkImmutable(Object val)
+  {
+    if (FanObj.isImmutable(val))
+      return val;
+    else
+      throw NotImmutableErr.make();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Read Buffers
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Record a read in the current thread's read buffer.  The buffer is
+   * lossy: under heavy load slots are overwritten before they are
+   * drained, which only makes the policy slightly less precise.
+   */
+  private void afterRead(Node n)
+  {
+    ReadBuffer buf = readBuffers[(int)spread((int)Thread.currentThread().getId()) & (numReadBuffers - 1)];
+    long t = buf.tail.getAndIncrement();
+    buf.slots.lazySet((int)(t & readBufferMask), n);
+    if ((t & readDrainMask) == readDrainMask && lock.tryLock())
+    {
+      try { maintain(expires() ? System.nanoTime() : 0L); }
+      finally { lock.unlock(); }
+    }
+  }
+
+  private void drainReads()
+  {
+    for (int i=0; i<readBuffers.length; ++i)
+    {
+      AtomicReferenceArray slots = readBuffers[i].slots;
+      for (int j=0; j<readBufferSize; ++j)
+      {
+        Node n = (Node)slots.getAndSet(j, null);
+        if (n != null && n.queue != DEAD) onAccess(n);
+      }
+    }
+  }
+
+  static final class ReadBuffer
+  {
+    final AtomicReferenceArray slots = new AtomicReferenceArray(readBufferSize);
+    final AtomicLong tail = new AtomicLong();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Policy
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Drain reads, remove expired entries, and evict for size.
+   * Caller must hold the lock.
+   */
+  private void maintain(long now)
+  {
+    drainReads();
+    if (expires()) expireEntries(now);
+    evictEntries();
+  }
+
+  private void onAdd(Node n)
+  {
+    sketch.increment(n.hash);
+    n.queue = WINDOW;
+    window.addLast(n);
+    windowWeight += n.weight;
+    weightedSize += n.weight;
+    if (writeTtl > 0L) addWriteLast(n);
+  }
+
+  private void onUpdate(Node n, Object val, long weight, long now)
+  {
+    long delta = weight - n.weight;
+    n.val = val;
+    n.weight = weight;
+    n.writeTime = now;
+    n.accessTime = now;
+    weightedSize += delta;
+    if (n.queue == WINDOW) windowWeight += delta;
+    else if (n.queue == PROTECTED) protectedWeight += delta;
+    if (writeTtl > 0L) { unlinkWrite(n); addWriteLast(n); }
+    onAccess(n);
+  }
+
+  private void onAccess(Node n)
+  {
+    sketch.increment(n.hash);
+    switch (n.queue)
+    {
+      case WINDOW:
+        window.moveToLast(n);
+        break;
+      case PROBATION:
+        // promote to protected, demoting its LRU entries if full
+        probation.remove(n);
+        n.queue = PROTECTED;
+        protectedQ.addLast(n);
+        protectedWeight += n.weight;
+        while (protectedWeight > protectedMax)
+        {
+          Node d = protectedQ.head;
+          if (d == null || d == n) break;
+          protectedQ.remove(d);
+          protectedWeight -= d.weight;
+          d.queue = PROBATION;
+          probation.addLast(d);
+        }
+        break;
+      case PROTECTED:
+        protectedQ.moveToLast(n);
+        break;
+    }
+  }
+
+  /**
+   * Move the entries which overflow the window to the tail of
+   * probation as candidates.  Then while over the maximum, compare
+   * the candidate most recently moved from the window with probation's
+   * LRU victim and evict whichever the sketch estimates is used less.
+   */
+  private void evictEntries()
+  {
+    int candidates = 0;
+    while (windowWeight > windowMax)
+    {
+      Node n = window.head;
+      if (n == null) break;
+      window.remove(n);
+      windowWeight -= n.weight;
+      n.queue = PROBATION;
+      probation.addLast(n);
+      ++candidates;
+    }
+
+    Node victim = probation.head;
+    Node candidate = candidates > 0 ? probation.tail : null;
+    while (weightedSize > maxSize)
+    {
+      if (candidates <= 0) candidate = null;
+
+      if (victim == null && candidate == null)
+      {
+        // probation is exhausted, so evict from protected then window
+        Node n = protectedQ.head != null ? protectedQ.head : window.head;
+        if (n == null) break;
+        evictNode(n, false);
+      }
+      else if (victim == null || victim == candidate)
+      {
+        Node prev = candidate.prev;
+        evictNode(candidate, false);
+        if (victim == candidate) victim = null;
+        candidate = prev;
+        --candidates;
+      }
+      else if (candidate == null)
+      {
+        Node next = victim.next;
+        evictNode(victim, false);
+        victim = next;
+      }
+      else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash))
+      {
+        Node next = victim.next;
+        evictNode(victim, false);
+        victim = next;
+      }
+      else
+      {
+        Node prev = candidate.prev;
+        evictNode(candidate, false);
+        candidate = prev;
+        --candidates;
+      }
+    }
+  }
+
+  /**
+   * Remove entries which have expired from the head of the write
+   * order and access order queues.  Access order is approximate since
+   * reads are buffered, so expired entries behind a live one are left
+   * to be caught lazily when they are read.
+   */
+  private void expireEntries(long now)
+  {
+    if (writeTtl > 0L)
+    {
+      while (writeHead != null && now - writeHead.writeTime >= writeTtl)
+        evictNode(writeHead, true);
+    }
+
+    if (accessTtl > 0L)
+    {
+      expireAccessOrder(window, now);
+      expireAccessOrder(probation, now);
+      expireAccessOrder(protectedQ, now);
+    }
+  }
+
+  private void expireAccessOrder(Deque q, long now)
+  {
+    while (q.head != null && now - q.head.accessTime >= accessTtl)
+      evictNode(q.head, true);
+  }
+
+  private boolean isExpired(Node n, long now)
+  {
+    if (writeTtl > 0L && now - n.writeTime >= writeTtl) return true;
+    if (accessTtl > 0L && now - n.accessTime >= accessTtl) return true;
+    return false;
+  }
+
+  private boolean expires() { return writeTtl > 0L || accessTtl > 0L; }
+
+  /**
+   * Remove node from the map and policy and count it as an
+   * expiration or an eviction.  Caller must hold the lock.
+   */
+  private void evictNode(Node n, boolean expired)
+  {
+    data.remove(n.key, n);
+    removeNode(n);
+    if (expired) expirations.increment();
+    else evictions.increment();
+  }
+
+  private void removeNode(Node n)
+  {
+    switch (n.queue)
+    {
+      case WINDOW:    window.remove(n); windowWeight -= n.weight; break;
+      case PROBATION: probation.remove(n); break;
+      case PROTECTED: protectedQ.remove(n); protectedWeight -= n.weight; break;
+      default:        return;
+    }
+    weightedSize -= n.weight;
+    if (writeTtl > 0L) unlinkWrite(n);
+    n.queue = DEAD;
+  }
+
+  private void addWriteLast(Node n)
+  {
+    n.writePrev = writeTail;
+    n.writeNext = null;
+    if (writeTail == null) writeHead = n; else writeTail.writeNext = n;
+    writeTail = n;
+  }
+
+  private void unlinkWrite(Node n)
+  {
+    Node p = n.writePrev, x = n.writeNext;
+    if (p == null) writeHead = x; else p.writeNext = x;
+    if (x == null) writeTail = p; else x.writePrev = p;
+    n.writePrev = n.writeNext = null;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Stats
+//////////////////////////////////////////////////////////////////////////
+
+  public Map stats()
+  {
+    long weight;
+    lock.lock();
+    try { weight = weightedSize; }
+    finally { lock.unlock(); }
+
+    Map m = Map.make(Sys.StrType, Sys.ObjType);
+    m.set("size",        Long.valueOf(data.size()));
+    m.set("weight",      Long.valueOf(weight));
+    m.set("hits",        Long.valueOf(hits.sum()));
+    m.set("misses",      Long.valueOf(misses.sum()));
+    m.set("loads",       Long.valueOf(loads.sum()));
+    m.set("loadErrs",    Long.valueOf(loadErrs.sum()));
+    m.set("loadTime",    Duration.make(loadTime.sum()));
+    m.set("evictions",   Long.valueOf(evictions.sum()));
+    m.set("expirations", Long.valueOf(expirations.sum()));
+    return (Map)m.toImmutable();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Node
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Node is a cache entry.  The key and value are read without the
+   * lock; everything else is only touched while holding the lock
+   * except accessTime which readers update racily.
+   */
+  static final class Node
+  {
+    Node(Object key, Object val, long weight, long now)
+    {
+      this.key        = key;
+      this.hash       = spread(key.hashCode());
+      this.val        = val;
+      this.weight     = weight;
+      this.writeTime  = now;
+      this.accessTime = now;
+    }
+
+    final Object key;
+    final int hash;
+    volatile Object val;
+    volatile long accessTime;
+    long writeTime;
+    long weight;
+    int queue;
+    Node prev, next;             // access order within queue
+    Node writePrev, writeNext;   // write order for expireAfterWrite
+  }
+
+  /**
+   * Doubly linked access order queue of nodes from LRU head to MRU tail.
+   */
+  static final class Deque
+  {
+    void addLast(Node n)
+    {
+      n.prev = tail;
+      n.next = null;
+      if (tail == null) head = n; else tail.next = n;
+      tail = n;
+    }
+
+    void remove(Node n)
+    {
+      Node p = n.prev, x = n.next;
+      if (p == null) head = x; else p.next = x;
+      if (x == null) tail = p; else x.prev = p;
+      n.prev = n.next = null;
+    }
+
+    void moveToLast(Node n)
+    {
+      if (tail == n) return;
+      remove(n);
+      addLast(n);
+    }
+
+    Node head, tail;
+  }
+
+  /**
+   * Load is an in-flight call to a loader function.
+   */
+  static final class Load
+  {
+    final Thread thread = Thread.currentThread();
+    final ActorFuture future = new ActorFuture(null);
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Sketch
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Sketch is a count-min sketch of 4-bit counters which estimates
+   * how often a key has been used.  Each long holds sixteen counters
+   * and every key maps to four counters in four different longs.  Once
+   * the number of increments reaches the sample size all the counters
+   * are halved, so that old popularity ages out.
+   */
+  static final class Sketch
+  {
+    Sketch(long maxSize)
+    {
+      int n = Integer.highestOneBit((int)Math.max(16L, Math.min(maxSize, 1 << 24)) - 1) << 1;
+      this.table = new long[n];
+      this.mask = n - 1;
+      this.sampleSize = 10 * n;
+    }
+
+    int frequency(int hash)
+    {
+      int start = (hash & 3) << 2;
+      int freq = 15;
+      for (int i=0; i<4; ++i)
+      {
+        int offset = (start + i) << 2;
+        int count = (int)((table[indexOf(hash, i)] >>> offset) & 0xfL);
+        if (count < freq) freq = count;
+      }
+      return freq;
+    }
+
+    void increment(int hash)
+    {
+      int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i=0; i<4; ++i)
+      {
+        int index = indexOf(hash, i);
+        int offset = (start + i) << 2;
+        long m = 0xfL << offset;
+        if ((table[index] & m) != m) { table[index] += 1L << offset; added = true; }
+      }
+      if (added && ++size >= sampleSize) reset();
+    }
+
+    private void reset()
+    {
+      for (int i=0; i<table.length; ++i) table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+      size = size >>> 1;
+    }
+
+    private int indexOf(int hash, int i)
+    {
+      long h = (hash + seeds[i]) * seeds[i];
+      h += h >>> 32;
+      return (int)h & mask;
+    }
+
+    static final long[] seeds = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    final long[] table;
+    final int mask;
+    final int sampleSize;
+    int size;
+  }
+
+  static int spread(int h)
+  {
+    h ^= h >>> 17;
+    h *= 0xed5ad4bb;
+    h ^= h >>> 11;
+    h *= 0xac4c1b51;
+    h ^= h >>> 15;
+    return h;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  static final int WINDOW    = 0;
+  static final int PROBATION = 1;
+  static final int PROTECTED = 2;
+  static final int DEAD      = 3;
+
+  static final int numReadBuffers = 16;
+  static final int readBufferSize = 64;
+  static final int readBufferMask = readBufferSize - 1;
+  static final int readDrainMask  = 31;
+
+  public long maxSize() { return maxSize; }
+  public void maxSize$init(Func f, long x) { maxSize = x; }
+  public long maxSize = 10_000;
+
+  public Func weigher() { return weigher; }
+  public void weigher$init(Func f, Func x) { weigher = x == null ? null : (Func)x.toImmutable(); }
+  public Func weigher = null;
+
+  public Duration expireAfterWrite() { return expireAfterWrite; }
+  public void expireAfterWrite$init(Func f, Duration x) { expireAfterWrite = x; }
+  public Duration expireAfterWrite = null;
+
+  public Duration expireAfterAccess() { return expireAfterAccess; }
+  public void expireAfterAccess$init(Func f, Duration x) { expireAfterAccess = x; }
+  public Duration expireAfterAccess = null;
+
+  private ConcurrentHashMap data;               // key to Node
+  private final ConcurrentHashMap loading = new ConcurrentHashMap();  // key to Load
+  private final ReentrantLock lock = new ReentrantLock();  // guards policy
+  private ReadBuffer[] readBuffers;             // striped lossy read buffers
+  private Sketch sketch;                        // frequency estimates
+  private final Deque window = new Deque();     // admission window LRU
+  private final Deque probation = new Deque();  // main segment on probation
+  private final Deque protectedQ = new Deque(); // main segment accessed twice
+  private Node writeHead, writeTail;            // write order for expiration
+  private long writeTtl, accessTtl;             // expiration ticks or zero
+  private long windowMax, protectedMax;         // segment maximum weights
+  private long weightedSize, windowWeight, protectedWeight;
+
+  private final LongAdder hits        = new LongAdder();
+  private final LongAdder misses      = new LongAdder();
+  private final LongAdder loads       = new LongAdder();
+  private final LongAdder loadErrs    = new LongAdder();
+  private final LongAdder loadTime    = new LongAdder();
+  private final LongAdder evictions   = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+}
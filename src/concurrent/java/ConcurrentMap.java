@@ -4,6 +4,7 @@
 //
 // History:
 //   11 Feb 16  Brian Frank  Creation
+//   17 Oct 26  agent  Compute and parallel bulk operations
 //
 
 package fan.concurrent;
@@ -11,6 +12,9 @@ package fan.concurrent;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import fan.sys.*;
 
 /**
@@ -69,6 +73,38 @@ public final class ConcurrentMap extends FanObj
     return this;
   }
 
+  public Object compute(Object key, Func func)
+  {
+    final Func f = (Func)func.toImmutable();
+    return map.compute(key, new BiFunction()
+    {
+      public Object apply(Object k, Object old) { return checkImmutableOrNull(f.call(old)); }
+    });
+  }
+
+  public Object computeIfAbsent(Object key, Func func)
+  {
+    final Func f = (Func)func.toImmutable();
+    return map.computeIfAbsent(key, new Function()
+    {
+      public Object apply(Object k) { return checkImmutableOrNull(f.call(k)); }
+    });
+  }
+
+  public Object merge(Object key, Object val, Func func)
+  {
+    final Func f = (Func)func.toImmutable();
+    return map.merge(key, checkImmutable(val), new BiFunction()
+    {
+      public Object apply(Object old, Object v) { return checkImmutableOrNull(f.call(old, v)); }
+    });
+  }
+
+  public boolean replace(Object key, Object expected, Object val)
+  {
+    return map.replace(key, expected, checkImmutable(val));
+  }
+
   public Object remove(Object key) { return map.remove(key); }
 
   public void clear() { map.clear(); }
@@ -95,6 +131,39 @@ public final class ConcurrentMap extends FanObj
     return null;
   }
 
+  public void eachPar(long threshold, Func func)
+  {
+    final Func f = (Func)func.toImmutable();
+    map.forEach(threshold, new BiConsumer()
+    {
+      public void accept(Object k, Object v) { f.call(v, k); }
+    });
+  }
+
+  public Object reducePar(long threshold, Func transform, Func reduce)
+  {
+    final Func t = (Func)transform.toImmutable();
+    final Func r = (Func)reduce.toImmutable();
+    return map.reduce(threshold,
+      new BiFunction()
+      {
+        public Object apply(Object k, Object v) { return t.call(v, k); }
+      },
+      new BiFunction()
+      {
+        public Object apply(Object a, Object b) { return r.call(a, b); }
+      });
+  }
+
+  public Object searchPar(long threshold, Func func)
+  {
+    final Func f = (Func)func.toImmutable();
+    return map.search(threshold, new BiFunction()
+    {
+      public Object apply(Object k, Object v) { return f.call(v, k); }
+    });
+  }
+
   public boolean containsKey(Object key) { return map.containsKey(key); }
 
   public List keys(Type of)
@@ -121,6 +190,11 @@ public final class ConcurrentMap extends FanObj
       throw NotImmutableErr.make();
   }
 
+  private Object checkImmutableOrNull(Object val)
+  {
+    return val == null ? null : checkImmutable(val);
+  }
+
   final ConcurrentHashMap map;
 }
 
@@ -18,7 +18,7 @@ import java.util.ArrayList;
  * list of messages.
  */
 public abstract class Future
-  extends FanObj
+  extends Mail
   implements java.util.concurrent.Future
 {
 
@@ -33,7 +33,9 @@ public abstract class Future
     self.wraps = wraps;
   }
 
-  public Future() {}
+  public Future() { super(null); }
+
+  Future(Object msg) { super(msg); }
 
 //////////////////////////////////////////////////////////////////////////
 // Obj
@@ -86,9 +88,38 @@ public abstract class Future
     return wrap(wrapped().then(onOk, onErr));
   }
 
+  public final Future thenBlocking(Func onOk) { return thenBlocking(onOk, null); }
+  public Future thenBlocking(Func onOk, Func onErr)
+  {
+    return wrap(wrapped().thenBlocking(onOk, onErr));
+  }
+
+  public final Future thenAsync(Func onOk) { return thenAsync(onOk, null, null); }
+  public final Future thenAsync(Func onOk, Func onErr) { return thenAsync(onOk, onErr, null); }
+  public Future thenAsync(Func onOk, Func onErr, ActorPool pool)
+  {
+    return wrap(wrapped().thenAsync(onOk, onErr, pool));
+  }
+
+  public Future orTimeout(Duration timeout, ActorPool pool)
+  {
+    return wrap(wrapped().orTimeout(timeout, pool));
+  }
+
+  public static Future allOf(List<Future> list) { return ActorFuture.makeAllOf(list); }
+
+  public static Future anyOf(List<Future> list) { return ActorFuture.makeAnyOf(list); }
+
   public static final void waitForAll(List<Future> list) { waitForAll(list, null); }
   public static final void waitForAll(List<Future> list, Duration timeout)
   {
+    // if every future is actor based, then park just once
+    if (allActorFutures(list))
+    {
+      ActorFuture.waitForAllDone(list, timeout);
+      return;
+    }
+
     if (timeout == null)
     {
       for (int i=0; i<list.sz(); ++i)
@@ -109,6 +140,16 @@ public abstract class Future
     }
   }
 
+  private static boolean allActorFutures(List<Future> list)
+  {
+    for (int i=0; i<list.sz(); ++i)
+    {
+      Future f = (Future)list.get(i);
+      if (!(f instanceof ActorFuture) && !(f.wraps instanceof ActorFuture)) return false;
+    }
+    return true;
+  }
+
   // java Future version
   public final boolean cancel(boolean mayInterrupt)
   {
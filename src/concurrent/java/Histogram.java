@@ -0,0 +1,219 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram is an HDR style histogram of log-linear buckets.  Values
+ * below subCount are counted exactly.  Above that each power of two
+ * range is split into subCount/2 linear sub-buckets, so a value is
+ * reported within a relative error of 2^-(subBits-1).  The buckets are
+ * an AtomicLongArray and the count/total are LongAdders, so recording
+ * never blocks and is a handful of atomic adds.
+ */
+public final class Histogram extends FanObj
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Construction
+//////////////////////////////////////////////////////////////////////////
+
+  public static Histogram make() { return make(2L); }
+  public static Histogram make(long significantDigits)
+  {
+    switch ((int)significantDigits)
+    {
+      case 1: return new Histogram(1, 5);
+      case 2: return new Histogram(2, 8);
+      case 3: return new Histogram(3, 11);
+    }
+    throw ArgErr.make("Histogram significantDigits must be 1, 2, or 3: " + significantDigits);
+  }
+
+  private Histogram(int digits, int subBits)
+  {
+    this.digits   = digits;
+    this.subBits  = subBits;
+    this.subCount = 1 << subBits;
+    this.subHalf  = subCount >> 1;
+    this.counts   = new AtomicLongArray(subCount + (63 - subBits) * subHalf);
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Obj
+//////////////////////////////////////////////////////////////////////////
+
+  public Type typeof() { return typeof$(); }
+
+  public static Type typeof$()
+  {
+    if (type == null) type = Type.find("concurrent::Histogram");
+    return type;
+  }
+  private static Type type;
+
+  public String toStr()
+  {
+    return "count=" + count() +
+           " min=" + min() +
+           " p50=" + percentile(50.0) +
+           " p90=" + percentile(90.0) +
+           " p99=" + percentile(99.0) +
+           " max=" + max();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Recording
+//////////////////////////////////////////////////////////////////////////
+
+  public long significantDigits() { return digits; }
+
+  public void record(long val)
+  {
+    if (val < 0L) throw ArgErr.make("Histogram value must be >= 0: " + val);
+    counts.getAndIncrement(indexOf(val));
+    count.increment();
+    total.add(val);
+    updateMin(val);
+    updateMax(val);
+  }
+
+  public Histogram merge(Histogram that)
+  {
+    if (that.subBits != subBits) throw ArgErr.make("Histogram precision mismatch: " + digits + " != " + that.digits);
+    if (that == this) throw ArgErr.make("Cannot merge histogram into itself");
+    long n = 0L;
+    for (int i=0; i<that.counts.length(); ++i)
+    {
+      long c = that.counts.get(i);
+      if (c == 0L) continue;
+      counts.getAndAdd(i, c);
+      n += c;
+    }
+    if (n == 0L) return this;
+    count.add(n);
+    total.add(that.total.sum());
+    updateMin(that.min.get());
+    updateMax(that.max.get());
+    return this;
+  }
+
+  public void reset()
+  {
+    for (int i=0; i<counts.length(); ++i) counts.set(i, 0L);
+    count.reset();
+    total.reset();
+    min.set(Long.MAX_VALUE);
+    max.set(0L);
+  }
+
+  private void updateMin(long val)
+  {
+    while (true)
+    {
+      long m = min.get();
+      if (val >= m || min.compareAndSet(m, val)) return;
+    }
+  }
+
+  private void updateMax(long val)
+  {
+    while (true)
+    {
+      long m = max.get();
+      if (val <= m || max.compareAndSet(m, val)) return;
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Queries
+//////////////////////////////////////////////////////////////////////////
+
+  public long count() { return count.sum(); }
+
+  public long min() { long m = min.get(); return m == Long.MAX_VALUE ? 0L : m; }
+
+  public long max() { return max.get(); }
+
+  public long total() { return total.sum(); }
+
+  public double mean()
+  {
+    long n = count.sum();
+    return n == 0L ? 0.0 : (double)total.sum() / n;
+  }
+
+  public long percentile(double percent)
+  {
+    if (percent < 0.0 || percent > 100.0) throw ArgErr.make("Percentile must be 0 to 100: " + percent);
+
+    // snapshot the counts so rank is consistent with the buckets we scan
+    int len = counts.length();
+    long[] c = new long[len];
+    long n = 0L;
+    for (int i=0; i<len; ++i) { c[i] = counts.get(i); n += c[i]; }
+    if (n == 0L) return 0L;
+
+    long rank = Math.max(1L, (long)Math.ceil(n * percent / 100.0));
+    long acc = 0L;
+    long max = max();
+    for (int i=0; i<len; ++i)
+    {
+      acc += c[i];
+      if (acc >= rank) return Math.min(highestOf(i), max);
+    }
+    return max;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Buckets
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Map a value to its bucket index.
+   */
+  final int indexOf(long val)
+  {
+    if (val < subCount) return (int)val;
+    int msb = 63 - Long.numberOfLeadingZeros(val);
+    int shift = msb - subBits + 1;
+    int mantissa = (int)(val >>> shift);
+    return subCount + (shift - 1) * subHalf + (mantissa - subHalf);
+  }
+
+  /**
+   * Largest value which maps to the given bucket index.
+   */
+  final long highestOf(int index)
+  {
+    if (index < subCount) return index;
+    int j = index - subCount;
+    int shift = j / subHalf + 1;
+    long mantissa = subHalf + (j % subHalf);
+    long high = ((mantissa + 1L) << shift) - 1L;
+    return high < 0L ? Long.MAX_VALUE : high;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  private final int digits;              // significant decimal digits
+  private final int subBits;             // log2 of subCount
+  private final int subCount;            // sub-buckets in linear range
+  private final int subHalf;             // sub-buckets per power of two
+  private final AtomicLongArray counts;  // bucket counts
+  private final LongAdder count = new LongAdder();  // number of values
+  private final LongAdder total = new LongAdder();  // sum of values
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong();
+}
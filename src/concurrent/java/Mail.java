@@ -0,0 +1,64 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.*;
+
+/**
+ * Mail is a message node linked into an actor's queue.  A send
+ * enqueues its ActorFuture directly, while sendNoReply enqueues a
+ * NoReply node which has no future state at all.  Future extends
+ * Mail rather than the other way around, so a NoReply is never a
+ * Future and cannot escape through the Future API.
+ */
+abstract class Mail
+  extends FanObj
+{
+  Mail(Object msg) { this.msg = msg; }
+
+  /**
+   * Return true if this is a sendNoReply message which
+   * is never completed.
+   */
+  boolean noReply() { return false; }
+
+  /**
+   * Return true if this message was cancelled before it was received.
+   */
+  public abstract boolean isCancelled();
+
+  /**
+   * Cancel this message if it has not been received yet.
+   */
+  public abstract void cancel();
+
+  Object msg;                  // message send to Actor
+  volatile Mail next;          // linked list in Actor
+  long enqueueTicks;           // nanoTime enqueued if instrumented
+  int lane;                    // LaneQueue lane + 1, or zero if unknown
+
+//////////////////////////////////////////////////////////////////////////
+// NoReply
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * NoReply is the node for sendNoReply.  It is never returned to
+   * the sender, so nobody can observe it being cancelled and cancel
+   * just drops it.
+   */
+  static final class NoReply extends Mail
+  {
+    NoReply(Object msg) { super(msg); }
+
+    boolean noReply() { return true; }
+
+    public boolean isCancelled() { return false; }
+
+    public void cancel() {}
+  }
+}
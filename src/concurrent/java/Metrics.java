@@ -0,0 +1,95 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics is the set of counters and histograms maintained by an
+ * ActorPool.  Everything updated on the actor hot path is either a
+ * LongAdder or a CAS which only occurs when a new peak is reached,
+ * so no locks are acquired.  Histograms are only allocated if the
+ * pool enables them since they require a System.nanoTime per message.
+ */
+final class Metrics
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Construction
+//////////////////////////////////////////////////////////////////////////
+
+  Metrics(boolean histograms)
+  {
+    if (histograms)
+    {
+      this.submitLatency = Histogram.make();
+      this.receiveTime   = Histogram.make();
+    }
+    else
+    {
+      this.submitLatency = null;
+      this.receiveTime   = null;
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Update
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Update the high-water mark of actor queue depth.
+   */
+  void queueDepth(int size)
+  {
+    while (true)
+    {
+      int p = queuePeak;
+      if (size <= p || PEAK.compareAndSet(this, p, size)) return;
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Snapshot
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Build an immutable Str:Obj snapshot of the pool's metrics.
+   */
+  Map toMap(WorkPool threadPool)
+  {
+    int[] threads = threadPool.threadCounts();
+    Map m = Map.make(Sys.StrType, Sys.ObjType);
+    m.set("activeThreads", Long.valueOf(threads[0]));
+    m.set("idleThreads",   Long.valueOf(threads[1]));
+    m.set("pendingActors", Long.valueOf(threads[2]));
+    m.set("submits",       Long.valueOf(submits.sum()));
+    m.set("received",      Long.valueOf(received.sum()));
+    m.set("yields",        Long.valueOf(yields.sum()));
+    m.set("overflows",     Long.valueOf(overflows.sum()));
+    m.set("queuePeak",     Long.valueOf(queuePeak));
+    if (submitLatency != null) m.set("submitLatency", submitLatency);
+    if (receiveTime != null)   m.set("receiveTime", receiveTime);
+    return (Map)m.toImmutable();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  static final AtomicIntegerFieldUpdater PEAK = AtomicIntegerFieldUpdater.newUpdater(Metrics.class, "queuePeak");
+
+  final LongAdder submits   = new LongAdder();  // actors submitted to thread pool
+  final LongAdder received  = new LongAdder();  // messages processed
+  final LongAdder yields    = new LongAdder();  // actors yielding for maxTimeBeforeYield
+  final LongAdder overflows = new LongAdder();  // messages rejected for maxQueue
+  volatile int queuePeak;                       // max queue depth of any actor
+  final Histogram submitLatency;                // submit to _work start or null
+  final Histogram receiveTime;                  // time per receive or null
+}
@@ -4,14 +4,32 @@
 //
 // History:
 //   28 Mar 09  Brian Frank  Creation
+//   17 Oct 26  agent  Rework to use hierarchical timing wheel
 //
 package fan.concurrent;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Scheduler is used to schedule work to be run after an elapsed
  * period of time.  It is optimized for use with the actor framework.
  * Scheduler lazily launches a background thread the first time an
  * item of work is scheduled.
+ *
+ * Pending work is stored in a hierarchical timing wheel so that both
+ * schedule and cancel are O(1) regardless of how many items are pending.
+ * The lowest wheel has a 1ms tick; items further out are stored in
+ * coarser overflow wheels and cascade down as their time approaches.
+ * Calls to schedule never take a lock: new items are handed off to the
+ * background thread via a concurrent queue.  Buckets (not items) are
+ * kept in a priority queue by expiration so that the background thread
+ * sleeps until the next bucket is due instead of ticking every 1ms.
  */
 public class Scheduler implements Runnable
 {
@@ -25,8 +43,12 @@ public class Scheduler implements Runnable
    */
   public Scheduler(String name)
   {
-    this.name = name;
-    this.alive = true;
+    this.name     = name;
+    this.alive    = true;
+    this.origin   = System.nanoTime();
+    this.incoming = new ConcurrentLinkedQueue();
+    this.buckets  = new PriorityQueue();
+    this.wheel    = new Wheel(0, tick, 0L);
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -34,103 +56,139 @@ public class Scheduler implements Runnable
 //////////////////////////////////////////////////////////////////////////
 
   /**
-   * Schedule the work item to be executed after
-   * the given duration of nanoseconds has elapsed.
+   * Schedule the work item to be executed after the given duration
+   * of nanoseconds has elapsed.  Return a node which can be used to
+   * cancel the scheduled work.
    */
-  public synchronized void schedule(long ns, Work work)
+  public Node schedule(long ns, Work work)
   {
-    // insert into our linked list
-    boolean newHead = add(ns, work);
+    // create new node relative to our origin time
+    Node node = new Node(this, toDeadline(ns), work);
+
+    // queue for background thread to add to the wheel
+    incoming.add(node);
 
     // if we haven't launched our thread yet, then launch it
-    if (thread == null)
-    {
-      thread = new Thread(this, name + "-Scheduler");
-      thread.start();
-    }
+    if (thread == null) launch();
 
-    // if we added to the head of our linked list, then we
-    // modified our earliest deadline, so we need to notify thread
-    if (newHead) notifyAll();
+    // if stopped while we were adding, then cancel ourselves
+    if (!alive) { cancelIncoming(); return node; }
+
+    // if before the next deadline the thread is waiting for,
+    // then we need to wake it up to add the node to the wheel
+    if (node.deadline < wakeAt) LockSupport.unpark(thread);
+    return node;
   }
 
   /**
-   * Add the work item into the linked list so that the list
-   * is always sorted by earliest deadline to oldest deadline.
-   * Return true if we have a new head which changes our
-   * next earliest deadline.
+   * Remove the given node without calling its work's cancel callback.
+   * This is a no-op if the node already fired or was cancelled.
    */
-  private boolean add(long ns, Work work)
+  public void cancel(Node node)
   {
-    // create new node for our linked list
-    Node node = new Node();
-    node.deadline = System.nanoTime() + ns;
-    node.work = work;
-
-    // if no items, this is easy
-    if (head == null)
-    {
-      head = node;
-      return true;
-    }
-
-    // if new item has earliest deadline it becomes new head
-    if (node.deadline < head.deadline)
-    {
-      node.next = head;
-      head = node;
-      return true;
-    }
+    node.cancelled = true;
+    synchronized (this) { node.unlink(); }
+  }
 
-    // find insertion point in linked list
-    Node last = head, cur = head.next;
-    while (cur != null)
+  /**
+   * Stop the background thread and call cancel
+   * on all pending work items.
+   */
+  public void stop()
+  {
+    ArrayList nodes = new ArrayList();
+    synchronized (this)
     {
-      if (node.deadline < cur.deadline)
+      // kill background thread
+      alive = false;
+      Thread thread = this.thread;
+      if (thread != null)
       {
-        node.next = cur;
-        last.next = node;
-        return false;
+        LockSupport.unpark(thread);
+        try { thread.interrupt(); } catch (Throwable e) {}
       }
 
-      last = cur;
-      cur = cur.next;
+      // clear all buckets of the wheel
+      while (true)
+      {
+        Bucket b = (Bucket)buckets.poll();
+        if (b == null) break;
+        b.flush(nodes);
+      }
     }
 
-    // this node has the oldest deadline, append to linked list
-    last.next = node;
-    return false;
+    // call cancel on everything in the wheel and incoming queue
+    cancel(nodes);
+    cancelIncoming();
   }
 
   /**
-   * Stop the background thread and call cancel
-   * on all pending work items.
+   * Debug
    */
-  public synchronized void stop()
+  public synchronized void dump()
   {
-    // kill background thread
-    alive = false;
-    try { thread.interrupt(); } catch (Throwable e) {}
-
-    // call cancel on everything in queue
-    Node node = head;
-    while (node != null)
+    Iterator it = buckets.iterator();
+    while (it.hasNext())
     {
-      try { node.work.cancel(); } catch (Throwable e) { e.printStackTrace(); }
-      node = node.next;
+      Bucket b = (Bucket)it.next();
+      for (Node n = b.head.next; n != b.head; n = n.next)
+        System.out.println("  " + n);
     }
+  }
 
-    // clear queue
-    head = null;
+//////////////////////////////////////////////////////////////////////////
+// Utils
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Current nanosecond time relative to our origin.
+   */
+  private long now()
+  {
+    return System.nanoTime() - origin;
   }
 
   /**
-   * Debug
+   * Map duration to deadline relative to origin, we clamp deadlines to
+   * a quarter of the long range (73 years) so the wheel math never
+   * overflows.
    */
-  public void dump()
+  private long toDeadline(long ns)
+  {
+    if (ns < 0L) ns = 0L;
+    long now = now();
+    if (ns > maxDeadline - now) return maxDeadline;
+    return now + ns;
+  }
+
+  private synchronized void launch()
+  {
+    if (thread != null || !alive) return;
+    Thread t = new Thread(this, name + "-Scheduler");
+    t.start();
+    thread = t;
+  }
+
+  private void cancelIncoming()
   {
-    for (Node n = head; n != null; n = n.next)
-      System.out.println("  " + n);
+    ArrayList nodes = new ArrayList();
+    while (true)
+    {
+      Node n = (Node)incoming.poll();
+      if (n == null) break;
+      nodes.add(n);
+    }
+    cancel(nodes);
+  }
+
+  private static void cancel(ArrayList nodes)
+  {
+    for (int i=0; i<nodes.size(); ++i)
+    {
+      Node n = (Node)nodes.get(i);
+      if (n.cancelled) continue;
+      try { n.work.cancel(); } catch (Throwable e) { e.printStackTrace(); }
+    }
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -139,31 +197,65 @@ public class Scheduler implements Runnable
 
   public void run()
   {
+    ArrayList expired = new ArrayList();
+    ArrayList flushed = new ArrayList();
     while (alive)
     {
       try
       {
-        Work work = null;
+        long next;
         synchronized (this)
         {
-          // if no work ready to go, then wait for next deadline
-          long now = System.nanoTime();
-          if (head == null || head.deadline > now)
+          if (!alive) break;
+          long now = now();
+
+          // flush every bucket which has expired; this advances the
+          // wheels and cascades nodes down or into the expired list
+          while (true)
+          {
+            Bucket b = (Bucket)buckets.peek();
+            if (b == null || b.expiration > now) break;
+            buckets.poll();
+            wheel.advance(b.expiration);
+            b.flush(flushed);
+            for (int i=0; i<flushed.size(); ++i) add((Node)flushed.get(i), now, expired);
+            flushed.clear();
+          }
+          wheel.advance(now);
+
+          // add newly scheduled nodes into the wheel
+          while (true)
           {
-            long toSleep = head != null ? head.deadline - now : Long.MAX_VALUE;
-            long ms = toSleep / 1000000L;
-            long ns = toSleep % 1000000L;
-            wait(ms, (int)ns);
-            continue;
+            Node n = (Node)incoming.poll();
+            if (n == null) break;
+            add(n, now, expired);
           }
 
-          // dequeue the next work item while holding lock
-          work = head.work;
-          head = head.next;
+          // next expiration we need to wake up for
+          Bucket b = (Bucket)buckets.peek();
+          next = b == null ? Long.MAX_VALUE : b.expiration;
+        }
+
+        // work callbacks ordered by deadline outside of the lock
+        if (expired.size() > 0)
+        {
+          if (expired.size() > 1) Collections.sort(expired, byDeadline);
+          for (int i=0; i<expired.size(); ++i)
+          {
+            Node n = (Node)expired.get(i);
+            if (n.cancelled) continue;
+            try { n.work.work(); } catch (Throwable e) { if (alive) e.printStackTrace(); }
+          }
+          expired.clear();
         }
 
-        // work callback
-        work.work();
+        // sleep until next deadline; schedule will unpark us if
+        // a new node is added with an earlier deadline
+        wakeAt = next;
+        if (!incoming.isEmpty()) continue;
+        long toSleep = next == Long.MAX_VALUE ? Long.MAX_VALUE : next - now();
+        if (toSleep > 0) LockSupport.parkNanos(this, toSleep);
+        Thread.interrupted();
       }
       catch (Throwable e)
       {
@@ -172,21 +264,201 @@ public class Scheduler implements Runnable
     }
   }
 
+  /**
+   * Add node to the wheel or to expired list if its deadline has passed.
+   */
+  private void add(Node node, long now, ArrayList expired)
+  {
+    if (node.cancelled) return;
+    if (node.deadline <= now || !wheel.add(node))
+      expired.add(node);
+  }
+
+  private static final Comparator byDeadline = new Comparator()
+  {
+    public int compare(Object a, Object b)
+    {
+      long x = ((Node)a).deadline, y = ((Node)b).deadline;
+      return x < y ? -1 : (x == y ? 0 : 1);
+    }
+  };
+
+//////////////////////////////////////////////////////////////////////////
+// Wheel
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Wheel is one level of the hierarchical timing wheel.  It has a
+   * fixed number of buckets, each covering tick nanoseconds.  Nodes due
+   * after the wheel's interval go into a lazily created overflow wheel
+   * whose tick is the interval of this wheel.
+   */
+  final class Wheel
+  {
+    Wheel(int level, long tick, long startTime)
+    {
+      this.level = level;
+      this.tick = tick;
+      this.interval = tick > Long.MAX_VALUE / wheelSize ? Long.MAX_VALUE : tick * wheelSize;
+      this.currentTime = startTime - (startTime % tick);
+      this.buckets = new Bucket[wheelSize];
+      for (int i=0; i<wheelSize; ++i) this.buckets[i] = new Bucket(level);
+    }
+
+    /**
+     * Add node to this wheel or an overflow wheel.  Return false if
+     * the node belongs to a time the wheel has already moved past.
+     */
+    boolean add(Node node)
+    {
+      long deadline = node.deadline;
+      if (deadline < currentTime) return false;
+
+      if (deadline - currentTime < interval)
+      {
+        // the lowest wheel expires a bucket at the end of its tick so we
+        // never fire early; overflow wheels expire at the start of the
+        // tick so their nodes cascade down in time
+        long vid = deadline / tick;
+        Bucket b = buckets[(int)(vid & (wheelSize - 1))];
+        b.add(node);
+        long expiration = level == 0 ? (vid + 1) * tick : vid * tick;
+        if (b.expiration != expiration)
+        {
+          b.expiration = expiration;
+          Scheduler.this.buckets.add(b);
+        }
+        return true;
+      }
+
+      // our current time is always aligned to the overflow wheel's
+      // current tick, so the node is always beyond its current tick
+      if (overflow == null) overflow = new Wheel(level+1, interval, currentTime);
+      return overflow.add(node);
+    }
+
+    /**
+     * Advance the current time of this wheel and its overflow wheels.
+     */
+    void advance(long time)
+    {
+      if (time < currentTime + tick) return;
+      currentTime = time - (time % tick);
+      if (overflow != null) overflow.advance(currentTime);
+    }
+
+    final long tick;          // nanoseconds per bucket
+    final long interval;      // nanoseconds covered by the whole wheel
+    final int level;          // zero for the lowest wheel
+    final Bucket[] buckets;   // circular array of buckets
+    long currentTime;         // start of current tick
+    Wheel overflow;           // next coarser wheel or null
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Bucket (doubly linked list of nodes)
+//////////////////////////////////////////////////////////////////////////
+
+  static final class Bucket implements Comparable
+  {
+    Bucket(int level)
+    {
+      this.level = level;
+      this.head = new Node(null, 0L, null);
+      head.next = head.prev = head;
+    }
+
+    /**
+     * Order by expiration, and then by level so that when buckets expire
+     * at the same time a finer wheel is always flushed first.  Otherwise
+     * nodes cascading down could land in a lowest wheel bucket which has
+     * expired but not yet been flushed.
+     */
+    public int compareTo(Object obj)
+    {
+      Bucket that = (Bucket)obj;
+      long x = expiration, y = that.expiration;
+      if (x != y) return x < y ? -1 : 1;
+      return level - that.level;
+    }
+
+    void add(Node node)
+    {
+      node.bucket = this;
+      node.prev = head.prev;
+      node.next = head;
+      head.prev.next = node;
+      head.prev = node;
+    }
+
+    /**
+     * Remove every node into the given list and reset expiration.
+     */
+    void flush(ArrayList acc)
+    {
+      Node n = head.next;
+      while (n != head)
+      {
+        Node next = n.next;
+        n.bucket = null;
+        n.prev = n.next = null;
+        acc.add(n);
+        n = next;
+      }
+      head.next = head.prev = head;
+      expiration = -1L;
+    }
+
+    final int level;          // level of wheel which owns this bucket
+    final Node head;          // sentinel
+    long expiration = -1L;    // time this bucket is due or -1
+  }
+
 //////////////////////////////////////////////////////////////////////////
-// Node (linked list of work)
+// Node (scheduled item of work)
 //////////////////////////////////////////////////////////////////////////
 
-  static class Node
+  public static final class Node
   {
+    Node(Scheduler scheduler, long deadline, Work work)
+    {
+      this.scheduler = scheduler;
+      this.deadline  = deadline;
+      this.work      = work;
+    }
+
+    /**
+     * Cancel this node without calling work's cancel callback.
+     */
+    public void cancel()
+    {
+      scheduler.cancel(this);
+    }
+
+    /**
+     * Remove from bucket if linked; must hold scheduler lock.
+     */
+    void unlink()
+    {
+      if (bucket == null) return;
+      prev.next = next;
+      next.prev = prev;
+      prev = next = null;
+      bucket = null;
+    }
+
     public String toString()
     {
-      long ms = (deadline - System.nanoTime()) / 1000000L;
+      long ms = (deadline - scheduler.now()) / 1000000L;
       return "Deadline: " + ms + "ms  Work: " + work;
     }
 
-    long deadline;   // System.nanoTime
-    Work work;       // item of work to execute
-    Node next;       // next node in linked list
+    final Scheduler scheduler;     // owning scheduler
+    final long deadline;           // nanoTime relative to scheduler origin
+    final Work work;               // item of work to execute
+    volatile boolean cancelled;    // set by cancel
+    Bucket bucket;                 // bucket we are linked into or null
+    Node prev, next;               // bucket linked list
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -203,8 +475,16 @@ public class Scheduler implements Runnable
 // Fields
 //////////////////////////////////////////////////////////////////////////
 
-  volatile boolean alive;  // is this scheduler alive
-  final String name;       // actor pool name
-  Thread thread;           // thread currently being used
-  Node head;               // linked list sorted by deadline
-}
\ No newline at end of file
+  static final long tick = 1000000L;              // 1ms lowest wheel tick
+  static final int wheelSize = 64;                // buckets per wheel
+  static final long maxDeadline = Long.MAX_VALUE >> 2;
+
+  volatile boolean alive;                         // is this scheduler alive
+  final String name;                              // actor pool name
+  final long origin;                              // System.nanoTime at creation
+  volatile Thread thread;                         // thread currently being used
+  volatile long wakeAt = Long.MAX_VALUE;          // deadline thread is sleeping until
+  private final ConcurrentLinkedQueue incoming;   // scheduled but not yet in wheel
+  private final PriorityQueue buckets;            // non-empty buckets by expiration
+  private final Wheel wheel;                      // lowest level wheel
+}
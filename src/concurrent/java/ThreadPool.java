@@ -15,7 +15,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * ThreadPool manages a pool of threads optimized for the Actor framework.
  */
-public class ThreadPool
+public class ThreadPool extends WorkPool
 {
 
 //////////////////////////////////////////////////////////////////////////
@@ -27,10 +27,8 @@ public class ThreadPool
    */
   public ThreadPool(String name, int max)
   {
-    this.name       = name;
-    this.max        = max;
+    super(name, max);
     this.idleTime   = 5000; // 5sec
-    this.idle       = new LinkedList();
     this.pending    = new LinkedList();
     this.hasPending = new AtomicBoolean();
     this.workers    = new HashMap(max*3);
@@ -74,7 +72,7 @@ public class ThreadPool
     // immediately wake up all the idle workers so they can die
     while (true)
     {
-      Worker w = (Worker)idle.poll();
+      Worker w = pollIdle();
       if (w == null) break;
       w.post(null);
     }
@@ -143,8 +141,10 @@ public class ThreadPool
    */
   public synchronized void submit(Work work)
   {
-    // if we have an idle thread, use it
-    Worker worker = (Worker)idle.poll();
+    // if we have an idle thread, use it; actors with affinity prefer
+    // the thread which last ran them so their state is still in cache
+    Worker worker = affinity(work);
+    if (worker == null) worker = pollIdle();
     if (worker != null)
     {
       worker.post(work);
@@ -165,6 +165,22 @@ public class ThreadPool
     hasPending.set(true);
   }
 
+  /**
+   * If work is an affine actor whose last thread is idle, then
+   * remove that thread from the idle list and return it.
+   */
+  private Worker affinity(Work work)
+  {
+    if (!(work instanceof Actor)) return null;
+    Actor actor = (Actor)work;
+    if (!actor.affine) return null;
+    Thread t = actor.lastThread;
+    if (!(t instanceof Worker)) return null;
+    Worker w = (Worker)t;
+    if (w.pool() != this || !removeIdle(w)) return null;
+    return w;
+  }
+
   /**
    * This is called by a worker when it completes a work item.  If
    * there is pending work post it back to the worker and return true.
@@ -190,7 +206,7 @@ public class ThreadPool
     }
 
     // add to head of idle list (we let oldest threads die out first)
-    idle.addFirst(w);
+    pushIdle(w);
     return true;
   }
 
@@ -199,11 +215,72 @@ public class ThreadPool
    */
   synchronized void free(Worker w)
   {
-    idle.remove(w);
+    removeIdle(w);
     workers.remove(w);
     notifyAll();
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Idle List
+//////////////////////////////////////////////////////////////////////////
+
+  // The idle list is a doubly linked list threaded through the workers
+  // themselves so that affinity and free can unlink a given worker in
+  // constant time without disturbing the order of the others.  Newest
+  // idle workers are at the head and oldest at the tail.  All access is
+  // synchronized on the pool.
+
+  /**
+   * Add worker to the head of the idle list.
+   */
+  private void pushIdle(Worker w)
+  {
+    w.idle = true;
+    w.idlePrev = null;
+    w.idleNext = idleHead;
+    if (idleHead != null) idleHead.idlePrev = w;
+    idleHead = w;
+    idleSize++;
+  }
+
+  /**
+   * Remove and return the worker at the head of the idle list or null.
+   */
+  private Worker pollIdle()
+  {
+    Worker w = idleHead;
+    if (w != null) removeIdle(w);
+    return w;
+  }
+
+  /**
+   * Unlink worker from the idle list.  Return false if it was not idle.
+   */
+  private boolean removeIdle(Worker w)
+  {
+    if (!w.idle) return false;
+    if (w.idlePrev != null) w.idlePrev.idleNext = w.idleNext;
+    else idleHead = w.idleNext;
+    if (w.idleNext != null) w.idleNext.idlePrev = w.idlePrev;
+    w.idle = false;
+    w.idlePrev = w.idleNext = null;
+    idleSize--;
+    return true;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Metrics
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return snapshot of number of threads running work, number of
+   * idle threads, and number of work items pending a thread.
+   */
+  synchronized int[] threadCounts()
+  {
+    return new int[] { workers.size() - idleSize, idleSize, pending.size() };
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Debug
 //////////////////////////////////////////////////////////////////////////
@@ -212,24 +289,13 @@ public class ThreadPool
   {
     out.printLine("  hasPending: " + hasPending());
     out.printLine("  pending:    " + pending.size());
-    out.printLine("  idle:       " + idle.size());
+    out.printLine("  idle:       " + idleSize);
     out.printLine("  workers:    " + workers.size());
     Iterator it = workers.values().iterator();
     while (it.hasNext())
     {
       Worker w = (Worker)it.next();
-      out.print("  ").print(w.getName()).print(": ");
-      Work work = w.work;
-      if (work == null)
-        out.print("idle");
-      else
-        out.print(work);
-      if (work instanceof Actor)
-      {
-        Actor actor = (Actor)work;
-        out.print(" [queue: ").print(actor.queueSize()).print("]");
-      }
-      out.printLine();
+      dumpWorker(out, w.getName(), w.work);
     }
   }
 
@@ -329,36 +395,25 @@ public class ThreadPool
       notifyAll();
     }
 
-    Work work;
-  }
-
-//////////////////////////////////////////////////////////////////////////
-// Work
-//////////////////////////////////////////////////////////////////////////
+    /**
+     * Pool which owns this worker.
+     */
+    ThreadPool pool() { return ThreadPool.this; }
 
-  /**
-   * Item of work to execute in the thread pool.
-   * Note: method _work() is used so we don't polluate Actor's namespace.
-   */
-  public static interface Work
-  {
-    public void _work();
-    public void _kill();
+    Work work;
+    boolean idle;              // if linked into pool's idle list
+    Worker idlePrev;           // next newer idle worker
+    Worker idleNext;           // next older idle worker
   }
 
 //////////////////////////////////////////////////////////////////////////
 // Fields
 //////////////////////////////////////////////////////////////////////////
 
-  static final int RUNNING  = 0;
-  static final int STOPPING = 1;
-  static final int DONE     = 2;
-
-  final String name;                // actor pool name
-  final int max;                    // maximum number of threads to use
   final int idleTime;               // time in ms to let threads idle (5sec)
   private volatile int state;       // life cycle state
-  private LinkedList idle;          // idle threads waiting for work
+  private Worker idleHead;          // idle threads waiting for work
+  private int idleSize;             // number of idle threads
   private AtomicBoolean hasPending; // if pending is non-empty
   private LinkedList pending;       // pending working we don't have threads for yet
   private HashMap workers;          // map of all worker threads
@@ -0,0 +1,293 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import fan.sys.Err;
+import fan.sys.UnsupportedErr;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreadPool is a WorkPool which runs each work item on a JDK
+ * virtual thread.  Virtual threads are cheap to create and do not pin
+ * an OS thread while blocked on I/O, so we don't bother caching idle
+ * threads; max is a limit on how many work items run concurrently and
+ * once it is reached work is queued until a running thread finishes.
+ * Virtual threads require Java 21 so we access them via reflection.
+ */
+public class VirtualThreadPool extends WorkPool
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Constructor
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Construct with max number of concurrent threads.
+   */
+  public VirtualThreadPool(String name, int max)
+  {
+    super(name, max);
+    this.factory = toFactory(name + "-Virtual-");
+    this.pending = new ConcurrentLinkedQueue();
+    this.runners = new ConcurrentHashMap();
+    this.active  = new AtomicInteger();
+  }
+
+  /**
+   * Use reflection to call Thread.ofVirtual().name(prefix, 0).factory()
+   */
+  private static ThreadFactory toFactory(String prefix)
+  {
+    try
+    {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class cls = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      builder = cls.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+      return (ThreadFactory)cls.getMethod("factory").invoke(builder);
+    }
+    catch (Throwable e)
+    {
+      throw UnsupportedErr.make("ActorPool.virtualThreads requires Java 21+", Err.make(e));
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Lifecycle
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Has this pool been stopped or killed.
+   */
+  public boolean isStopped()
+  {
+    return state != RUNNING;
+  }
+
+  /**
+   * Has all the work in this queue finished processing and
+   * all threads terminated.
+   */
+  public boolean isDone()
+  {
+    if (state == DONE) return true;
+    if (state == RUNNING || active.get() > 0) return false;
+    state = DONE;
+    return true;
+  }
+
+  /**
+   * Orderly shutdown of threads.  All pending work items are processed.
+   */
+  public void stop()
+  {
+    if (state == RUNNING) state = STOPPING;
+  }
+
+  /**
+   * Unorderly shutdown of threads.  All pending work are discarded,
+   * and interrupt is sent to each thread.
+   */
+  public void kill()
+  {
+    if (state == RUNNING) state = STOPPING;
+
+    // kill all the pending work
+    while (true)
+    {
+      Work work = (Work)pending.poll();
+      if (work == null) break;
+      work._kill();
+    }
+
+    // interupt each thread
+    Iterator it = runners.keySet().iterator();
+    while (it.hasNext()) ((Thread)it.next()).interrupt();
+  }
+
+  /**
+   * Wait for all threads to stop.
+   * Return true on success or false on timeout.
+   */
+  public synchronized boolean join(long msTimeout)
+    throws InterruptedException
+  {
+    long deadline = System.nanoTime()/1000000L + msTimeout;
+    while (true)
+    {
+      // if all threads have completed, then return success
+      if (active.get() == 0) return true;
+
+      // if we have gone past our deadline, return false
+      long toSleep = deadline - System.nanoTime()/1000000L;
+      if (toSleep <= 0) return false;
+
+      // sleep until something interesting happens
+      wait(toSleep);
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Work Management
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return if we have pending work awaiting a thread.
+   */
+  boolean hasPending() { return !pending.isEmpty(); }
+
+  /**
+   * Submit the given work to be run by a thread in this pool.  If we
+   * are below max then launch a new virtual thread to run it, otherwise
+   * queue the work until a running thread finishes its current work.
+   */
+  public void submit(Work work)
+  {
+    if (reserve())
+    {
+      launch(work);
+      return;
+    }
+
+    // queue the work, then double check that a thread didn't
+    // finish between our reserve attempt and adding to pending
+    pending.add(work);
+    launchPending();
+  }
+
+  /**
+   * Attempt to reserve one of the max concurrent threads.
+   */
+  private boolean reserve()
+  {
+    while (true)
+    {
+      int n = active.get();
+      if (n >= max) return false;
+      if (active.compareAndSet(n, n+1)) return true;
+    }
+  }
+
+  /**
+   * Release a thread reserved by reserve.
+   */
+  private void release()
+  {
+    active.decrementAndGet();
+    if (state != RUNNING) synchronized (this) { notifyAll(); }
+  }
+
+  /**
+   * Launch threads for pending work while we are below max.
+   */
+  private void launchPending()
+  {
+    while (!pending.isEmpty())
+    {
+      if (!reserve()) return;
+      Work work = (Work)pending.poll();
+      if (work == null) { release(); continue; }
+      launch(work);
+    }
+  }
+
+  /**
+   * Launch a new virtual thread for given work; caller must reserve.
+   */
+  private void launch(Work work)
+  {
+    try
+    {
+      factory.newThread(new Runner(work)).start();
+    }
+    catch (Throwable e)
+    {
+      release();
+      throw Err.make(e);
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Metrics
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Virtual threads are never cached so there are no idle threads.
+   */
+  int[] threadCounts()
+  {
+    return new int[] { active.get(), 0, pending.size() };
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Debug
+//////////////////////////////////////////////////////////////////////////
+
+  public void dump(fan.sys.OutStream out)
+  {
+    out.printLine("  mode:       virtualThreads");
+    out.printLine("  hasPending: " + hasPending());
+    out.printLine("  pending:    " + pending.size());
+    out.printLine("  active:     " + active.get());
+    Iterator it = runners.keySet().iterator();
+    while (it.hasNext())
+    {
+      Thread t = (Thread)it.next();
+      Runner r = (Runner)runners.get(t);
+      if (r != null) dumpWorker(out, t.getName(), r.work);
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Runner
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Runner executes work on a virtual thread and then keeps
+   * executing pending work until there is none left.
+   */
+  final class Runner implements Runnable
+  {
+    Runner(Work work) { this.work = work; }
+
+    public void run()
+    {
+      Thread thread = Thread.currentThread();
+      runners.put(thread, this);
+      try
+      {
+        while (work != null)
+        {
+          try { work._work(); } catch (Throwable e) { e.printStackTrace(); }
+          work = (Work)pending.poll();
+        }
+      }
+      finally
+      {
+        runners.remove(thread);
+        release();
+        launchPending();
+      }
+    }
+
+    Work work;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  private final ThreadFactory factory;           // creates virtual threads
+  private final ConcurrentLinkedQueue pending;   // work waiting for a thread
+  private final ConcurrentHashMap runners;       // running threads to Runner
+  private final AtomicInteger active;            // reserved thread count
+  private volatile int state = RUNNING;          // life cycle state
+}
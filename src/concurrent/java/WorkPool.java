@@ -0,0 +1,136 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+/**
+ * WorkPool is the base class for the thread pools which execute the
+ * work items of an ActorPool.  ThreadPool is the default monitor based
+ * pool, WorkStealingPool and VirtualThreadPool are the alternates.
+ */
+public abstract class WorkPool
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Constructor
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Construct with max number of threads.
+   */
+  WorkPool(String name, int max)
+  {
+    this.name = name;
+    this.max  = max;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Lifecycle
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Has this pool been stopped or killed.
+   */
+  public abstract boolean isStopped();
+
+  /**
+   * Has all the work in this queue finished processing and
+   * all threads terminated.
+   */
+  public abstract boolean isDone();
+
+  /**
+   * Orderly shutdown of threads.  All pending work items are processed.
+   */
+  public abstract void stop();
+
+  /**
+   * Unorderly shutdown of threads.  All pending work are discarded,
+   * and interrupt is sent to each thread.
+   */
+  public abstract void kill();
+
+  /**
+   * Wait for all threads to stop.
+   * Return true on success or false on timeout.
+   */
+  public abstract boolean join(long msTimeout)
+    throws InterruptedException;
+
+//////////////////////////////////////////////////////////////////////////
+// Work Management
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return if we have pending work awaiting a thread.
+   */
+  abstract boolean hasPending();
+
+  /**
+   * Submit the given work to be run by a thread in this pool.
+   */
+  public abstract void submit(Work work);
+
+//////////////////////////////////////////////////////////////////////////
+// Metrics
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return snapshot of number of threads running work, number of
+   * idle threads, and number of work items pending a thread.
+   */
+  abstract int[] threadCounts();
+
+//////////////////////////////////////////////////////////////////////////
+// Debug
+//////////////////////////////////////////////////////////////////////////
+
+  public abstract void dump(fan.sys.OutStream out);
+
+  /**
+   * Print debug line for given worker thread and its current work.
+   */
+  static void dumpWorker(fan.sys.OutStream out, String name, Work work)
+  {
+    out.print("  ").print(name).print(": ");
+    if (work == null)
+      out.print("idle");
+    else
+      out.print(work);
+    if (work instanceof Actor)
+    {
+      Actor actor = (Actor)work;
+      out.print(" [queue: ").print(actor.queueSize()).print("]");
+    }
+    out.printLine();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Work
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Item of work to execute in the thread pool.
+   * Note: method _work() is used so we don't polluate Actor's namespace.
+   */
+  public static interface Work
+  {
+    public void _work();
+    public void _kill();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  static final int RUNNING  = 0;
+  static final int STOPPING = 1;
+  static final int DONE     = 2;
+
+  final String name;                // actor pool name
+  final int max;                    // maximum number of threads to use
+}
@@ -0,0 +1,301 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WorkStealingPool is a WorkPool backed by a ForkJoinPool running
+ * in async (FIFO) mode.  Every worker thread owns its own deque of work.
+ * Work submitted from one of our own worker threads (an actor which
+ * resubmits itself after yielding or sends to an idle actor) is pushed
+ * onto that thread's local deque, and idle threads steal from busy
+ * ones.  Unlike ThreadPool there is no pool wide monitor on the submit
+ * path.
+ */
+public class WorkStealingPool extends WorkPool
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Constructor
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Construct with max number of threads.
+   */
+  public WorkStealingPool(String name, int max)
+  {
+    super(name, max);
+    this.workers = new ConcurrentHashMap();
+    this.pool = new Pool(max, new Factory());
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Lifecycle
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Has this pool been stopped or killed.
+   */
+  public boolean isStopped()
+  {
+    return state != RUNNING;
+  }
+
+  /**
+   * Has all the work in this queue finished processing and
+   * all threads terminated.  Once a stopped pool has gone quiet
+   * we shutdown the fork/join pool which lets its threads die.
+   */
+  public boolean isDone()
+  {
+    if (state == DONE) return true;
+    if (state == RUNNING) return false;
+    if (pool.isQuiescent()) pool.shutdown();
+    if (!pool.isTerminated()) return false;
+    state = DONE;
+    return true;
+  }
+
+  /**
+   * Orderly shutdown of threads.  All pending work items are processed.
+   */
+  public void stop()
+  {
+    if (state == RUNNING) state = STOPPING;
+  }
+
+  /**
+   * Unorderly shutdown of threads.  All pending work are discarded,
+   * and interrupt is sent to each thread.
+   */
+  public void kill()
+  {
+    if (state == RUNNING) state = STOPPING;
+    killed = true;
+
+    // kill all the pending work
+    ArrayList tasks = new ArrayList();
+    pool.drain(tasks);
+    for (int i=0; i<tasks.size(); ++i)
+    {
+      try { ((Task)tasks.get(i)).work._kill(); }
+      catch (Throwable e) { e.printStackTrace(); }
+    }
+
+    // interrupt each thread
+    pool.shutdownNow();
+  }
+
+  /**
+   * Wait for all threads to stop.
+   * Return true on success or false on timeout.
+   */
+  public boolean join(long msTimeout)
+    throws InterruptedException
+  {
+    long deadline = System.nanoTime()/1000000L + msTimeout;
+    while (true)
+    {
+      // if all workers have completed, then return success
+      if (isDone()) return true;
+
+      // if we have gone past our deadline, return false
+      long toSleep = deadline - System.nanoTime()/1000000L;
+      if (toSleep <= 0) return false;
+
+      // if already shutdown we can block on termination, otherwise
+      // poll until the pool has finished processing pending work
+      if (pool.isShutdown())
+        pool.awaitTermination(toSleep, TimeUnit.MILLISECONDS);
+      else
+        Thread.sleep(Math.min(toSleep, 10L));
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Work Management
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return if we have pending work awaiting a thread.  When called
+   * on one of our worker threads this is true if the thread has more
+   * work queued locally than there are idle threads to steal it, or
+   * if there is work queued from outside the pool.
+   */
+  boolean hasPending()
+  {
+    return ForkJoinTask.getSurplusQueuedTaskCount() > 0 || pool.hasQueuedSubmissions();
+  }
+
+  /**
+   * Submit the given work to be run by a thread in this pool.  If
+   * called on one of this pool's worker threads, then the work is
+   * pushed onto that thread's local deque.  Otherwise it is queued
+   * as an external submission to be picked up by the next idle thread.
+   * Once the pool has been killed the work is killed instead.
+   */
+  public void submit(Work work)
+  {
+    if (killed) { work._kill(); return; }
+
+    Task task = new Task(work);
+    Thread t = Thread.currentThread();
+    if (t instanceof Worker && ((Worker)t).owner == this)
+    {
+      // if kill raced us after the check above, then the fork may
+      // have missed the drain; take it back if we still can
+      task.fork();
+      if (killed && task.tryUnfork()) work._kill();
+      return;
+    }
+
+    try
+    {
+      pool.execute(task);
+    }
+    catch (RejectedExecutionException e)
+    {
+      // pool has been shutdown, so nothing will ever run this work
+      work._kill();
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Metrics
+//////////////////////////////////////////////////////////////////////////
+
+  int[] threadCounts()
+  {
+    int active = pool.getActiveThreadCount();
+    long pending = pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+    return new int[] { active, Math.max(0, pool.getPoolSize() - active), (int)Math.min(pending, Integer.MAX_VALUE) };
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Debug
+//////////////////////////////////////////////////////////////////////////
+
+  public void dump(fan.sys.OutStream out)
+  {
+    long pending = pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+    out.printLine("  mode:       workStealing");
+    out.printLine("  hasPending: " + (pending > 0));
+    out.printLine("  pending:    " + pending);
+    out.printLine("  idle:       " + (pool.getPoolSize() - pool.getActiveThreadCount()));
+    out.printLine("  workers:    " + workers.size());
+    out.printLine("  steals:     " + pool.getStealCount());
+    Iterator it = workers.keySet().iterator();
+    while (it.hasNext())
+    {
+      Worker w = (Worker)it.next();
+      dumpWorker(out, w.getName(), w.work);
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Pool
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * ForkJoinPool subclass to expose drainTasksTo for kill.
+   */
+  static final class Pool extends ForkJoinPool
+  {
+    Pool(int max, ForkJoinWorkerThreadFactory factory)
+    {
+      super(max, factory, null, true);
+    }
+
+    int drain(ArrayList acc) { return drainTasksTo(acc); }
+  }
+
+  /**
+   * Factory to create our named worker threads.
+   */
+  final class Factory implements ForkJoinPool.ForkJoinWorkerThreadFactory
+  {
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+    {
+      return new Worker(pool, name + "-Worker-" + counter.getAndIncrement());
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Worker
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Worker is a fork/join thread which tracks its current work for dump.
+   */
+  final class Worker extends ForkJoinWorkerThread
+  {
+    Worker(ForkJoinPool pool, String name)
+    {
+      super(pool);
+      setName(name);
+      this.owner = WorkStealingPool.this;
+    }
+
+    protected void onStart()
+    {
+      super.onStart();
+      workers.put(this, this);
+    }
+
+    protected void onTermination(Throwable e)
+    {
+      workers.remove(this);
+      super.onTermination(e);
+    }
+
+    final WorkStealingPool owner;
+    Work work;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Task
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Task wraps one submission of a work item.
+   */
+  static final class Task extends RecursiveAction
+  {
+    Task(Work work) { this.work = work; }
+
+    protected void compute()
+    {
+      Worker w = (Worker)Thread.currentThread();
+      w.work = work;
+      try { work._work(); } catch (Throwable e) { e.printStackTrace(); }
+      w.work = null;
+    }
+
+    final Work work;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  private final Pool pool;                  // fork/join pool with per-thread deques
+  private final ConcurrentHashMap workers;  // live worker threads
+  private final AtomicInteger counter = new AtomicInteger();  // thread name counter
+  private volatile int state = RUNNING;     // life cycle state
+  private volatile boolean killed;          // kill has been called
+}
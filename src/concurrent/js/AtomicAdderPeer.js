@@ -0,0 +1,32 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 2026  agent  Creation
+//
+
+/**
+ * AtomicAdderPeer
+ */
+class AtomicAdderPeer extends sys.Obj {
+  constructor() { super(); }
+
+  #val = 0;
+
+  add(self, delta) { this.#val = this.#val + delta; }
+
+  increment(self) { this.add(self, 1); }
+
+  decrement(self) { this.add(self, -1); }
+
+  sum(self) { return this.#val; }
+
+  reset(self) { this.#val = 0; }
+
+  sumThenReset(self) {
+    const old = this.#val;
+    this.#val = 0;
+    return old;
+  }
+}
@@ -5,6 +5,7 @@
 // History:
 //   10 Jun 2019  Matthew Giannini  Creation
 //   22 Jun 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent              Compute and parallel bulk operations
 //
 
 /**
@@ -60,6 +61,34 @@ class ConcurrentMap extends sys.Obj {
     return this;
   }
 
+  compute(key, f) {
+    const val = f(this.#map.get(key));
+    if (val == null) this.#map.remove(key);
+    else this.#map.set(key, this.#checkImmutable(val));
+    return val;
+  }
+
+  computeIfAbsent(key, f) {
+    let val = this.#map.get(key);
+    if (val != null) return val;
+    val = f(key);
+    if (val != null) this.#map.set(key, this.#checkImmutable(val));
+    return val;
+  }
+
+  merge(key, val, f) {
+    this.#checkImmutable(val);
+    const old = this.#map.get(key);
+    return this.compute(key, () => old == null ? val : f(old, val));
+  }
+
+  replace(key, expected, val) {
+    const old = this.#map.get(key);
+    if (old == null || !sys.ObjUtil.equals(old, expected)) return false;
+    this.#map.set(key, this.#checkImmutable(val));
+    return true;
+  }
+
   remove(key) { return this.#map.remove(key); }
 
   clear() { this.#map.clear(); }
@@ -68,6 +97,19 @@ class ConcurrentMap extends sys.Obj {
 
   eachWhile(f) { return this.#map.eachWhile(f); }
 
+  eachPar(threshold, f) { this.#map.each(f); }
+
+  reducePar(threshold, transform, reduce) {
+    let acc = null;
+    this.#map.each((v, k) => {
+      const r = transform(v, k);
+      if (r != null) acc = acc == null ? r : reduce(acc, r);
+    });
+    return acc;
+  }
+
+  searchPar(threshold, f) { return this.#map.eachWhile(f); }
+
   containsKey(key) { return this.#map.containsKey(key); }
 
   keys(of) {
@@ -7,6 +7,7 @@
 //   13 May 2010  Andy Frank         Move from sys to concurrent
 //   22 Jun 2023  Matthew Giannini   Refactor for ES
 //   22 Jun 2025  Brian Frank        Integrate promise support
+//   17 Oct 2026  agent              Non-blocking composition
 //
 
 /**
@@ -91,6 +92,33 @@ class Future extends sys.Obj {
     return this.wrap(Future.makePromise(this.promise().then(onOk, onErr)));
   }
 
+  thenBlocking(onOk, onErr) {
+    return this.then(onOk, onErr);
+  }
+
+  thenAsync(onOk, onErr, pool) {
+    return this.then(onOk, onErr);
+  }
+
+  orTimeout(timeout, pool) {
+    let timer = null;
+    const expired = new Promise((resolve, reject) => {
+      timer = setTimeout(() => reject(sys.TimeoutErr.make("Future timed out")), timeout.toMillis());
+    });
+    const p = Promise.race([this.promise(), expired]).finally(() => clearTimeout(timer));
+    return this.wrap(Future.makePromise(p));
+  }
+
+  static allOf(futures) {
+    const p = Promise.all(futures.__values().map((f) => f.promise()));
+    return Future.makePromise(p.then((r) => sys.List.make(sys.Obj.type$.toNullable(), r).toImmutable()));
+  }
+
+  static anyOf(futures) {
+    if (futures.isEmpty()) throw sys.ArgErr.make("Futures list is empty");
+    return Future.makePromise(Promise.race(futures.__values().map((f) => f.promise())));
+  }
+
   promise() {
     if (this.#wraps) { return this.#wraps.promise(); }
 
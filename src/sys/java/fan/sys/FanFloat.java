@@ -5,6 +5,7 @@
 // History:
 //   4 Dec 05  Brian Frank  Creation
 //   4 Oct 08  Brian Frank  Refactor Float into Double/FanFloat
+//   17 Oct 26  agent  Boxed Double cache for emitted code
 //
 package fan.sys;
 
@@ -413,5 +414,22 @@ public final class FanFloat extends FanNum
   public static final String NegInfStr = "-INF";
   public static final String NaNStr    = "NaN";
 
+  /**
+   * Box a double; used by emitted code instead of Double.valueOf
+   * so the small whole numbers 0.0 to 255.0 are shared instead of
+   * allocated.  Negative zero is never cached since it is not equal
+   * to 0.0.
+   */
+  public static Double box(double self)
+  {
+    int i = (int)self;
+    if (i == self && 0 <= i && i < boxes.length && (i != 0 || Double.doubleToRawLongBits(self) == 0L))
+      return boxes[i];
+    return Double.valueOf(self);
+  }
+
+  static final Double[] boxes = new Double[256];
+  static { for (int i=0; i<boxes.length; ++i) boxes[i] = Double.valueOf(i); }
+
 }
 
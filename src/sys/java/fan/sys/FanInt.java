@@ -5,6 +5,7 @@
 // History:
 //   2 Dec 05  Brian Frank  Creation
 //   4 Oct 08  Brian Frank  Refactor long into Long/FanInt
+//   17 Oct 26  agent  Boxed Long cache for emitted code
 //
 package fan.sys;
 
@@ -535,5 +536,33 @@ public final class FanInt extends FanNum
   static final Long[] pos = new Long[256];
   static { for (int i=0; i<pos.length; ++i) pos[i] = Long.valueOf(i); }
 
+  /**
+   * Box a long; used by emitted code instead of Long.valueOf so that
+   * values from -128 up to the "intBoxCache" sys config prop (default
+   * 1024) are shared instead of allocated.
+   */
+  public static Long box(long self)
+  {
+    long i = self + 128L;
+    if (0L <= i && i < BoxCache.longs.length) return BoxCache.longs[(int)i];
+    return Long.valueOf(self);
+  }
+
+  // lazily loaded on first box() so Sys config is ready
+  static final class BoxCache
+  {
+    static final Long[] longs;
+    static
+    {
+      int max = Math.max(pos.length-1, Math.min(Sys.sysConfigInt("intBoxCache", 1024), 1 << 20));
+      longs = new Long[max + 129];
+      for (int i=0; i<longs.length; ++i)
+      {
+        int v = i - 128;
+        longs[i] = 0 <= v && v < pos.length ? pos[v] : Long.valueOf(v);
+      }
+    }
+  }
+
 }
 
@@ -204,6 +204,11 @@ public abstract class File
     }
   }
 
+  public Stream streamWalk()
+  {
+    return Stream.make(new Stream.WalkSource(this));
+  }
+
   public abstract File normalize();
 
   public File plus(Uri uri) { return plus(uri, true); }
@@ -603,6 +603,11 @@ public class InStream
     }
   }
 
+  public Stream streamLines()
+  {
+    return Stream.make(new Stream.LinesSource(this));
+  }
+
   public String readAllStr() { return readAllStr(true); }
   public String readAllStr(final boolean normalizeNewlines)
   {
@@ -4,6 +4,10 @@
 //
 // History:
 //   4 Dec 05  Brian Frank  Creation
+//   17 Oct 26  agent  Copy-on-write sharing for immutable/dup
+//   17 Oct 26  agent  Packed long[]/double[] storage for Int/Float
+//   17 Oct 26  agent  Parallel sort, map, findAll, and reduce
+//   17 Oct 26  agent  Sublist views
 //
 package fan.sys;
 
@@ -17,11 +21,26 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import fanx.serial.*;
 import fanx.util.*;
 
 /**
  * List represents a linear sequence of Objects indexed by an Int.
+ *
+ * Lists of non-nullable sys::Int or sys::Float are packed into a long[]
+ * or double[] rather than an array of boxed Long/Double, and items are
+ * only boxed as they are read.  Lists constructed from an existing array
+ * use that array as is; and if a null or some other type is ever stored
+ * into a packed list (only possible via reflection or Java code), then it
+ * is permanently converted to boxed storage.
+ *
+ * Immutable, readonly, and dup lists may share their backing array with
+ * the list they came from until either one is modified (see share and
+ * modify).  This is share until first write rather than a persistent
+ * structure: the first modification of a shared list copies all of its
+ * items, so dup().add on a large immutable list is still O(n).
  */
 public final class List<V>
   extends FanObj
@@ -99,16 +118,19 @@ public final class List<V>
 
   List(Type of)
   {
-    if (of == null) { Thread.dumpStack(); throw NullErr.make(); }
-    this.of = of;
-    this.values = (V[])empty;
+    this(of, 0);
   }
 
   List(Type of, int capacity)
   {
     if (of == null) { Thread.dumpStack(); throw NullErr.make(); }
     this.of = of;
-    this.values = capacity == 0 ? (V[])empty : newArray(capacity);
+    if (of == Sys.IntType)
+      this.longs = capacity == 0 ? emptyLongs : new long[capacity];
+    else if (of == Sys.FloatType)
+      this.doubles = capacity == 0 ? emptyDoubles : new double[capacity];
+    else
+      this.values = capacity == 0 ? (V[])empty : newArray(capacity);
   }
 
   List(Type of, V[] values)
@@ -192,14 +214,14 @@ public final class List<V>
     else
     {
       // null out removed items for GC
-      for (int i=newSize; i<size; ++i) values[i] = null;
+      clearItems(newSize, size);
       size = newSize;
     }
   }
 
   public final long capacity()
   {
-    return values.length;
+    return storeLength() - base;
   }
 
   public final void capacity(long c)
@@ -207,9 +229,9 @@ public final class List<V>
     modify();
     int newCapacity = (int)c;
     if (newCapacity < size) throw ArgErr.make("capacity < size");
-    V[] temp = newArray(newCapacity);
-    System.arraycopy(values, 0, temp, 0, size);
-    values = temp;
+    Object temp = newStore(newCapacity);
+    System.arraycopy(store(), 0, temp, 0, size);
+    setStore(temp);
   }
 
   public final V get(long index)
@@ -218,8 +240,8 @@ public final class List<V>
     {
       int i = (int)index;
       if (i < 0) i = size + i;
-      if (i >= size) throw IndexErr.make(index);
-      return values[i];
+      if (i >= size || i < 0) throw IndexErr.make(index);
+      return item(i);
     }
     catch (ArrayIndexOutOfBoundsException e)
     {
@@ -227,12 +249,38 @@ public final class List<V>
     }
   }
 
+  /**
+   * Get the Int at the given index without boxing it if this
+   * list is packed.  This is for Java natives iterating Int[].
+   */
+  public final long getInt(long index)
+  {
+    int i = (int)index;
+    if (i < 0) i = size + i;
+    if (i >= size || i < 0) throw IndexErr.make(index);
+    if (longs != null) return longs[base+i];
+    return ((Long)item(i)).longValue();
+  }
+
+  /**
+   * Get the Float at the given index without boxing it if this
+   * list is packed.  This is for Java natives iterating Float[].
+   */
+  public final double getFloat(long index)
+  {
+    int i = (int)index;
+    if (i < 0) i = size + i;
+    if (i >= size || i < 0) throw IndexErr.make(index);
+    if (doubles != null) return doubles[base+i];
+    return ((Double)item(i)).doubleValue();
+  }
+
   public final V getSafe(long index) { return getSafe(index, null); }
   public final V getSafe(long index, V def)
   {
     if (index < 0) index = size + index;
     if (index >= size || index < 0) return def;
-    return values[(int)index];
+    return item((int)index);
   }
 
   public final List<V> getRange(Range r)
@@ -243,17 +291,35 @@ public final class List<V>
     if (n < 0) throw IndexErr.make(r);
 
     List acc = new List(of, n);
+    acc.copyItems(0, this, s, n);
     acc.size = n;
-    System.arraycopy(values, s, acc.values, 0, n);
     return acc;
   }
 
+  public final List<V> view(Range r)
+  {
+    int s = r.startIndex(size);
+    int e = r.endIndex(size);
+    int n = e - s + 1;
+    if (n < 0) throw IndexErr.make(r);
+
+    // the view shares our backing array offset by its start index;
+    // we copy our values on our next modification
+    List view = share(new List(of));
+    view.base += s;
+    view.size = n;
+    view.readonly = true;
+    view.immutable = immutable;
+    return view;
+  }
+
   public final boolean contains(Object value)
   {
     if (value == null) return containsSame(value);
+    if (values == null) return indexPacked(value, 0, size, 1) >= 0;
     for (int i=0; i<size; ++i)
     {
-      Object obj = values[i];
+      Object obj = values[base+i];
       if (obj != null && obj.equals(value))
         return true;
     }
@@ -262,8 +328,9 @@ public final class List<V>
 
   public final boolean containsSame(Object value)
   {
+    if (values == null) return indexPacked(value, 0, size, 1) >= 0;
     for (int i=0; i<size; ++i)
-      if (values[i] == value) return true;
+      if (values[base+i] == value) return true;
     return false;
   }
 
@@ -289,21 +356,22 @@ public final class List<V>
     if (size == 0) return null;
     int start = (int)off;
     if (start < 0) start = size + start;
-    if (start >= size) throw IndexErr.make(off);
+    if (start >= size || start < 0) throw IndexErr.make(off);
+    if (values == null) return toIndex(indexPacked(value, start, size, 1));
 
     try
     {
       if (value == null)
       {
         for (int i=start; i<size; ++i)
-          if (values[i] == null)
+          if (values[base+i] == null)
             return Long.valueOf(i);
       }
       else
       {
         for (int i=start; i<size; ++i)
         {
-          Object obj = values[i];
+          Object obj = values[base+i];
           if (obj != null && obj.equals(value))
             return Long.valueOf(i);
         }
@@ -322,21 +390,22 @@ public final class List<V>
     if (size == 0) return null;
     int start = (int)off;
     if (start < 0) start = size + start;
-    if (start >= size) throw IndexErr.make(off);
+    if (start >= size || start < 0) throw IndexErr.make(off);
+    if (values == null) return toIndex(indexPacked(value, start, -1, -1));
 
     try
     {
       if (value == null)
       {
         for (int i=start; i>=0; --i)
-          if (values[i] == null)
+          if (values[base+i] == null)
             return Long.valueOf(i);
       }
       else
       {
         for (int i=start; i>=0; --i)
         {
-          Object obj = values[i];
+          Object obj = values[base+i];
           if (obj != null && obj.equals(value))
             return Long.valueOf(i);
         }
@@ -355,12 +424,13 @@ public final class List<V>
     if (size == 0) return null;
     int start = (int)off;
     if (start < 0) start = size + start;
-    if (start >= size) throw IndexErr.make(off);
+    if (start >= size || start < 0) throw IndexErr.make(off);
+    if (values == null) return toIndex(indexPacked(value, start, size, 1));
 
     try
     {
       for (int i=start; i<size; ++i)
-        if (value == values[i])
+        if (value == values[base+i])
           return Long.valueOf(i);
       return null;
     }
@@ -373,19 +443,31 @@ public final class List<V>
   public final V first()
   {
     if (size == 0) return null;
-    return values[0];
+    return item(0);
   }
 
   public final V last()
   {
     if (size == 0) return null;
-    return values[size-1];
+    return item(size-1);
   }
 
   public final List<V> dup()
   {
+    // readonly lists never write their values, so the dup can share
+    // them and defer the copy until it is first modified
+    if (readonly) return share(new List(of));
+
+    if (values == null)
+    {
+      List dup = new List(of, size);
+      dup.copyItems(0, this, 0, size);
+      dup.size = size;
+      return dup;
+    }
+
     V[] dup = newArray(size);
-    System.arraycopy(values, 0, dup, 0, size);
+    System.arraycopy(values, base, dup, 0, size);
     return new List(of, dup);
   }
 
@@ -394,7 +476,7 @@ public final class List<V>
     long hash = 33;
     for (int i=0; i<size; ++i)
     {
-      Object obj = values[i];
+      Object obj = item(i);
       hash = (31*hash) + (obj == null ? 0 : hash(obj));
     }
     return hash;
@@ -407,8 +489,14 @@ public final class List<V>
       List x = (List)that;
       if (!of.equals(x.of)) return false;
       if (size != x.size) return false;
+      if (longs != null && x.longs != null)
+      {
+        for (int i=0; i<size; ++i)
+          if (longs[base+i] != x.longs[x.base+i]) return false;
+        return true;
+      }
       for (int i=0; i<size; ++i)
-        if (!OpUtil.compareEQ(values[i], x.values[i])) return false;
+        if (!OpUtil.compareEQ(item(i), x.item(i))) return false;
       return true;
     }
     return false;
@@ -421,12 +509,15 @@ public final class List<V>
   public final List<V> set(long index, V value)
   {
     modify();
+    if (values == null && !fits(value)) unpack();
     try
     {
       int i = (int)index;
       if (i < 0) i = size + i;
       if (i >= size) throw IndexErr.make(index);
-      values[i] = value;
+      if (values != null) values[i] = value;
+      else if (longs != null) longs[i] = ((Long)value).longValue();
+      else doubles[i] = ((Double)value).doubleValue();
       return this;
     }
     catch (ArrayIndexOutOfBoundsException e)
@@ -480,6 +571,11 @@ public final class List<V>
     try
     {
       modify();
+      if (values == null)
+      {
+        if (fits(value)) return insertPacked(i, value);
+        unpack();
+      }
       if (values.length <= size)
         grow(size+1);
       if (i < size)
@@ -507,12 +603,13 @@ public final class List<V>
   {
     modify();
     if (list.size == 0) return this;
-    if (values.length < size+list.size)
-      grow(size+list.size);
+    int n = list.size;
+    if (storeLength() < size+n)
+      grow(size+n);
     if (i < size)
-      System.arraycopy(values, i, values, i+list.size, size-i);
-    System.arraycopy(list.values, 0, values, i, list.size);
-    size+=list.size;
+      System.arraycopy(store(), i, store(), i+n, size-i);
+    copyItems(i, list, 0, n);
+    size+=n;
     return this;
   }
 
@@ -538,10 +635,11 @@ public final class List<V>
     int i = (int)index;
     if (i < 0) i = size + i;
     if (i >= size) throw IndexErr.make(index);
-    V old = values[i];
+    V old = item(i);
     if (i < size-1)
-      System.arraycopy(values, i+1, values, i, size-i-1);
+      System.arraycopy(store(), i+1, store(), i, size-i-1);
     size--;
+    if (values != null) values[size] = null;
     return old;
   }
 
@@ -554,9 +652,9 @@ public final class List<V>
     if (n < 0) throw IndexErr.make(r);
 
     int shift = size-s-n;
-    if (shift > 0) System.arraycopy(values, s+n, values, s, shift);
+    if (shift > 0) System.arraycopy(store(), s+n, store(), s, shift);
     size -= n;
-    for (int i=size; i<size+n; ++i) values[i] = null;
+    clearItems(size, size+n);
     return this;
   }
 
@@ -567,17 +665,26 @@ public final class List<V>
     if (toRemove.sz() == 0) { return this; }
     if (toRemove.sz() == 1) { remove(toRemove.get(0)); return this; }
 
-    // rebuild the backing store array, implementation
-    // assumes that this list is bigger than toRemove list
-    V[] newValues = newArray(values.length);
-    int newSize = 0;
-    for (int i=0; i<size; ++i)
+    // compact the items we keep down in place; packed items
+    // are compared unboxed against the toRemove list
+    int n = 0;
+    if (values != null)
+    {
+      for (int i=0; i<size; ++i)
+        if (!toRemove.contains(values[i])) values[n++] = values[i];
+    }
+    else if (longs != null)
+    {
+      for (int i=0; i<size; ++i)
+        if (!toRemove.containsLong(longs[i])) longs[n++] = longs[i];
+    }
+    else
     {
-      V val = values[i];
-      if (!toRemove.contains(val)) newValues[newSize++] = val;
+      for (int i=0; i<size; ++i)
+        if (!toRemove.containsDouble(doubles[i])) doubles[n++] = doubles[i];
     }
-    this.values = newValues;
-    this.size = newSize;
+    clearItems(n, size);
+    this.size = n;
     return this;
   }
 
@@ -587,23 +694,19 @@ public final class List<V>
     if (desired < 1) throw Err.make("desired " + desired + " < 1");
     int newSize = Math.max(desired, size*2);
     if (newSize < 10) newSize = 10;
-    V[] temp = newArray(newSize);
-    System.arraycopy(values, 0, temp, 0, size);
-    values = temp;
+    Object temp = newStore(newSize);
+    System.arraycopy(store(), 0, temp, 0, size);
+    setStore(temp);
   }
 
   public final List<V> trim()
   {
     modify();
-    if (size == 0)
-    {
-      values = (V[])empty;
-    }
-    else if (values.length != size)
+    if (storeLength() != size)
     {
-      V[] temp = newArray(size);
-      System.arraycopy(values, 0, temp, 0, size);
-      values = temp;
+      Object temp = newStore(size);
+      System.arraycopy(store(), 0, temp, 0, size);
+      setStore(temp);
     }
     return this;
   }
@@ -611,8 +714,7 @@ public final class List<V>
   public final List<V> _clear()
   {
     modify();
-    for (int i=0; i<size; ++i)
-      values[i] = null;
+    clearItems(0, size);
     size = 0;
     return this;
   }
@@ -620,9 +722,12 @@ public final class List<V>
   public final List<V> fill(V val, long times)
   {
     modify();
+    if (values == null && !fits(val)) unpack();
     int t = (int)times;
-    if (values.length < size+t) grow(size+t);
-    for (int i=0; i<t; ++i) values[size+i] = val;
+    if (storeLength() < size+t) grow(size+t);
+    if (values != null) Arrays.fill(values, size, size+t, val);
+    else if (longs != null) Arrays.fill(longs, size, size+t, ((Long)val).longValue());
+    else Arrays.fill(doubles, size, size+t, ((Double)val).doubleValue());
     size += t;
     return this;
   }
@@ -634,7 +739,7 @@ public final class List<V>
   public final V peek()
   {
     if (size == 0) return null;
-    return values[size-1];
+    return item(size-1);
   }
 
   public final V pop()
@@ -659,12 +764,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        f.call(values[i]);
+        f.call(item(i));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        f.call(values[i], Long.valueOf(i));
+        f.call(item(i), Long.valueOf(i));
     }
   }
 
@@ -673,12 +778,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=size-1; i>=0; --i)
-        f.call(values[i]);
+        f.call(item(i));
     }
     else
     {
       for (int i=size-1; i>=0; --i)
-        f.call(values[i], Long.valueOf(i));
+        f.call(item(i), Long.valueOf(i));
     }
   }
 
@@ -688,7 +793,7 @@ public final class List<V>
     {
       for (int i=0; i<size; ++i)
       {
-        Object value = values[i];
+        Object value = item(i);
         if (value != null) f.call(value);
       }
     }
@@ -696,7 +801,7 @@ public final class List<V>
     {
       for (int i=0; i<size; ++i)
       {
-        Object value = values[i];
+        Object value = item(i);
         if (value != null) f.call(value, Long.valueOf(i));
       }
     }
@@ -712,22 +817,27 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=s; i<=e; ++i)
-        f.call(values[i]);
+        f.call(item(i));
     }
     else
     {
       for (int i=s; i<=e; ++i)
-        f.call(values[i], Long.valueOf(i));
+        f.call(item(i), Long.valueOf(i));
     }
   }
 
+  public final Stream _stream()
+  {
+    return Stream.make(new Stream.ListSource(this));
+  }
+
   public final Object eachWhile(Func f)
   {
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
       {
-        Object r = f.call(values[i]);
+        Object r = f.call(item(i));
         if (r != null) return r;
       }
     }
@@ -735,7 +845,7 @@ public final class List<V>
     {
       for (int i=0; i<size; ++i)
       {
-        Object r = f.call(values[i], Long.valueOf(i));
+        Object r = f.call(item(i), Long.valueOf(i));
         if (r != null) return r;
       }
     }
@@ -748,7 +858,7 @@ public final class List<V>
     {
       for (int i=size-1; i>=0; --i)
       {
-        Object r = f.call(values[i]);
+        Object r = f.call(item(i));
         if (r != null) return r;
       }
     }
@@ -756,7 +866,7 @@ public final class List<V>
     {
       for (int i=size-1; i>=0; --i)
       {
-        Object r = f.call(values[i], Long.valueOf(i));
+        Object r = f.call(item(i), Long.valueOf(i));
         if (r != null) return r;
       }
     }
@@ -768,14 +878,14 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i]))
-          return values[i];
+        if (f.callBool(item(i)))
+          return item(i);
     }
     else
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i], Long.valueOf(i)))
-          return values[i];
+        if (f.callBool(item(i), Long.valueOf(i)))
+          return item(i);
     }
     return null;
   }
@@ -786,7 +896,7 @@ public final class List<V>
     {
       for (int i=0; i<size; ++i)
       {
-        if (f.callBool(values[i]))
+        if (f.callBool(item(i)))
           return Long.valueOf(i);
       }
     }
@@ -795,7 +905,7 @@ public final class List<V>
       for (int i=0; i<size; ++i)
       {
         Long pos = Long.valueOf(i);
-        if (f.callBool(values[i], pos))
+        if (f.callBool(item(i), pos))
           return pos;
       }
     }
@@ -808,14 +918,14 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i]))
-          acc.add(values[i]);
+        if (f.callBool(item(i)))
+          acc.add(item(i));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i], Long.valueOf(i)))
-          acc.add(values[i]);
+        if (f.callBool(item(i), Long.valueOf(i)))
+          acc.add(item(i));
     }
     return acc;
   }
@@ -825,7 +935,7 @@ public final class List<V>
     List acc = new List(t, size);
     for (int i=0; i<size; ++i)
     {
-      Object item = values[i];
+      Object item = item(i);
       if (item != null && typeof(item).is(t))
         acc.add(item);
     }
@@ -837,7 +947,7 @@ public final class List<V>
     List acc = new List(of.toNonNullable(), size);
     for (int i=0; i<size; ++i)
     {
-      Object item = values[i];
+      Object item = item(i);
       if (item != null)
         acc.add(item);
     }
@@ -850,14 +960,14 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        if (!f.callBool(values[i]))
-          acc.add(values[i]);
+        if (!f.callBool(item(i)))
+          acc.add(item(i));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        if (!f.callBool(values[i], Long.valueOf(i)))
-          acc.add(values[i]);
+        if (!f.callBool(item(i), Long.valueOf(i)))
+          acc.add(item(i));
     }
     return acc;
   }
@@ -867,13 +977,13 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i]))
+        if (f.callBool(item(i)))
           return true;
     }
     else
     {
       for (int i=0; i<size; ++i)
-        if (f.callBool(values[i], Long.valueOf(i)))
+        if (f.callBool(item(i), Long.valueOf(i)))
           return true;
     }
     return false;
@@ -884,13 +994,13 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        if (!f.callBool(values[i]))
+        if (!f.callBool(item(i)))
           return false;
     }
     else
     {
       for (int i=0; i<size; ++i)
-        if (!f.callBool(values[i], Long.valueOf(i)))
+        if (!f.callBool(item(i), Long.valueOf(i)))
           return false;
     }
     return true;
@@ -901,12 +1011,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        reduction = f.call(reduction, values[i]);
+        reduction = f.call(reduction, item(i));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        reduction = f.call(reduction, values[i], Long.valueOf(i));
+        reduction = f.call(reduction, item(i), Long.valueOf(i));
     }
     return reduction;
   }
@@ -919,12 +1029,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        acc.add(f.call(values[i]));
+        acc.add(f.call(item(i)));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        acc.add(f.call(values[i], Long.valueOf(i)));
+        acc.add(f.call(item(i), Long.valueOf(i)));
     }
     return acc;
   }
@@ -937,12 +1047,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        acc.addNotNull(f.call(values[i]));
+        acc.addNotNull(f.call(item(i)));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        acc.addNotNull(f.call(values[i], Long.valueOf(i)));
+        acc.addNotNull(f.call(item(i), Long.valueOf(i)));
     }
     return acc;
   }
@@ -956,12 +1066,12 @@ public final class List<V>
     if (f.arity() == 1)
     {
       for (int i=0; i<size; ++i)
-        acc.addAll((List)f.call(values[i]));
+        acc.addAll((List)f.call(item(i)));
     }
     else
     {
       for (int i=0; i<size; ++i)
-        acc.addAll((List)f.call(values[i], Long.valueOf(i)));
+        acc.addAll((List)f.call(item(i), Long.valueOf(i)));
     }
     return acc;
   }
@@ -982,7 +1092,7 @@ public final class List<V>
     boolean arity1 = f.arity() == 1;
     for (int i=0; i<size; ++i)
     {
-      Object val = values[i];
+      Object val = item(i);
       Object key = arity1 ? f.call(val) : f.call(val, Long.valueOf(i));
       List bucket = (List)acc.get(key);
       if (bucket == null)
@@ -999,11 +1109,12 @@ public final class List<V>
   public final V max(Func f)
   {
     if (size == 0) return null;
+    if (f == null && values == null) return maxPacked(1);
     Comparator c = toComparator(f);
-    V max = values[0];
+    V max = item(0);
     for (int i=1; i<size; ++i)
-      if (c.compare(values[i], max) > 0)
-        max = values[i];
+      if (c.compare(item(i), max) > 0)
+        max = item(i);
     return max;
   }
 
@@ -1011,14 +1122,40 @@ public final class List<V>
   public final V min(Func f)
   {
     if (size == 0) return null;
+    if (f == null && values == null) return maxPacked(-1);
     Comparator c = toComparator(f);
-    V min = values[0];
+    V min = item(0);
     for (int i=1; i<size; ++i)
-      if (c.compare(values[i], min) < 0)
-        min = values[i];
+      if (c.compare(item(i), min) < 0)
+        min = item(i);
     return min;
   }
 
+  /**
+   * Find the max (sign 1) or min (sign -1) packed item without
+   * boxing, ordering Floats like Double.compare as compare does.
+   */
+  private V maxPacked(int sign)
+  {
+    if (longs != null)
+    {
+      long r = longs[base];
+      for (int i=1; i<size; ++i)
+      {
+        long x = longs[base+i];
+        if (sign > 0 ? x > r : x < r) r = x;
+      }
+      return (V)FanInt.box(r);
+    }
+    double r = doubles[base];
+    for (int i=1; i<size; ++i)
+    {
+      double x = doubles[base+i];
+      if (Double.compare(x, r) * sign > 0) r = x;
+    }
+    return (V)FanFloat.box(r);
+  }
+
   public final List<V> unique()
   {
     if (size <= 1) return dup();
@@ -1026,7 +1163,7 @@ public final class List<V>
     List acc = new List(of, size);
     for (int i=0; i<size; ++i)
     {
-      Object v = values[i];
+      Object v = item(i);
       if (dups.get(v) == null)
       {
         dups.put(v, this);
@@ -1045,7 +1182,7 @@ public final class List<V>
     // first me
     for (int i=0; i<size; ++i)
     {
-      Object v = values[i];
+      Object v = item(i);
       if (dups.get(v) == null)
       {
         dups.put(v, this);
@@ -1056,7 +1193,7 @@ public final class List<V>
     // then him
     for (int i=0; i<that.size; ++i)
     {
-      Object v = that.values[i];
+      Object v = that.item(i);
       if (dups.get(v) == null)
       {
         dups.put(v, this);
@@ -1072,14 +1209,14 @@ public final class List<V>
     // put other list into map
     HashMap dups = new HashMap(that.size*3);
     for (int i=0; i<that.size; ++i)
-      dups.put(that.values[i], this);
+      dups.put(that.item(i), this);
 
     // now walk this list and accumulate
     // everything found in the dups map
     List acc = new List(of, size);
     for (int i=0; i<size; ++i)
     {
-      Object v = values[i];
+      Object v = item(i);
       if (dups.get(v) != null)
       {
         acc.add(v);
@@ -1097,7 +1234,10 @@ public final class List<V>
   public final List<V> sort(final Func f)
   {
     modify();
-    Arrays.sort(values, 0, size, toComparator(f));
+    if (values != null) Arrays.sort(values, 0, size, toComparator(f));
+    else if (f != null) sortPacked(toComparator(f), false);
+    else if (longs != null) Arrays.sort(longs, 0, size);
+    else Arrays.sort(doubles, 0, size);
     return this;
   }
 
@@ -1105,20 +1245,39 @@ public final class List<V>
   public final List<V> sortr(final Func f)
   {
     modify();
-    Arrays.sort(values, 0, size, toReverseComparator(f));
+    if (values != null) Arrays.sort(values, 0, size, toReverseComparator(f));
+    else if (f != null) sortPacked(toReverseComparator(f), false);
+    else if (longs != null) { Arrays.sort(longs, 0, size); reverse(); }
+    else { Arrays.sort(doubles, 0, size); reverse(); }
     return this;
   }
 
+  /**
+   * Sort packed items with a comparator by boxing them into a
+   * temporary array; we only write back if the sort succeeds.
+   */
+  private void sortPacked(Comparator c, boolean par)
+  {
+    Object[] temp = new Object[size];
+    boxItems(0, temp, 0, size);
+    if (par) Arrays.parallelSort(temp, c);
+    else Arrays.sort(temp, c);
+    for (int i=0; i<size; ++i)
+    {
+      if (longs != null) longs[i] = ((Long)temp[i]).longValue();
+      else doubles[i] = ((Double)temp[i]).doubleValue();
+    }
+  }
+
   public final long binarySearch(V key) { return binarySearch(key, null); }
   public final long binarySearch(V key, Func f)
   {
     Comparator c = toComparator(f);
-    Object[] values = this.values;
     int low = 0, high = size-1;
     while (low <= high)
     {
       int probe = (low + high) >> 1;
-      int cmp = c.compare(values[probe], key);
+      int cmp = c.compare(item(probe), key);
       if (cmp < 0)
         low = probe + 1;
       else if (cmp > 0)
@@ -1131,13 +1290,12 @@ public final class List<V>
 
   public final long binaryFind(Func f)
   {
-    Object[] values = this.values;
     int low = 0, high = size-1;
     boolean oneArg = f.arity() == 1;
     while (low <= high)
     {
       int probe = (low + high) >> 1;
-      Object val = values[probe];
+      Object val = item(probe);
       Object res = oneArg ? f.call(val) : f.call(val, Long.valueOf(probe));
       long cmp = ((Long)res).longValue();
       if (cmp > 0)
@@ -1153,16 +1311,10 @@ public final class List<V>
   public final List<V> reverse()
   {
     modify();
-    Object[] values = this.values;
     int size = this.size;
     int mid   = size/2;
     for (int i=0; i<mid; ++i)
-    {
-      Object a = values[i];
-      Object b = values[size-i-1];
-      values[i] = b;
-      values[size-i-1] = a;
-    }
+      swapItems(i, size-i-1);
     return this;
   }
 
@@ -1198,7 +1350,7 @@ public final class List<V>
   {
     for (int i=0; i<size; ++i)
     {
-      Object item = values[i];
+      Object item = item(i);
       if (item instanceof List)
         ((List)item).doFlatten(acc);
       else
@@ -1211,7 +1363,7 @@ public final class List<V>
     if (size == 0) return null;
     int i = FanInt.random.nextInt();
     if (i < 0) i = -i;
-    return values[i % size];
+    return item(i % size);
   }
 
   public final List<V> shuffle()
@@ -1220,13 +1372,166 @@ public final class List<V>
     for (int i=0; i<size; ++i)
     {
       int randi = FanInt.random.nextInt(i+1);
-      V temp = values[i];
-      values[i] = values[randi];
-      values[randi] = temp;
+      swapItems(i, randi);
     }
     return this;
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Parallel
+//////////////////////////////////////////////////////////////////////////
+
+  public final List<V> sortPar() { return sortPar(null); }
+  public final List<V> sortPar(Func f)
+  {
+    if (f != null) f = (Func)f.toImmutable();
+    if (size < parThreshold) return sort(f);
+    modify();
+    if (values != null) Arrays.parallelSort(values, 0, size, toComparator(f));
+    else if (f != null) sortPacked(toComparator(f), true);
+    else if (longs != null) Arrays.parallelSort(longs, 0, size);
+    else Arrays.parallelSort(doubles, 0, size);
+    return this;
+  }
+
+  public final List mapPar(Func f)
+  {
+    f = (Func)f.toImmutable();
+    if (size < parThreshold) return map(f);
+    Type r = f.returns();
+    if (r == Sys.VoidType) r = Sys.ObjType.toNullable();
+    final Object[] results = new Object[size];
+    new ParTask(this, f)
+    {
+      Object chunk(int lo, int hi)
+      {
+        for (int i=lo; i<hi; ++i) results[i] = call(i);
+        return null;
+      }
+    }.run();
+    List acc = new List(r, size);
+    for (int i=0; i<results.length; ++i) acc.add(results[i]);
+    return acc;
+  }
+
+  public final List<V> findAllPar(Func f)
+  {
+    f = (Func)f.toImmutable();
+    if (size < parThreshold) return findAll(f);
+    final boolean[] matches = new boolean[size];
+    new ParTask(this, f)
+    {
+      Object chunk(int lo, int hi)
+      {
+        for (int i=lo; i<hi; ++i) matches[i] = ((Boolean)call(i)).booleanValue();
+        return null;
+      }
+    }.run();
+    List acc = new List(of, size);
+    for (int i=0; i<matches.length; ++i)
+      if (matches[i]) acc.add(item(i));
+    return acc;
+  }
+
+  public final Object reducePar(final Object init, Func f, Func combine)
+  {
+    f = (Func)f.toImmutable();
+    final Func c = (Func)combine.toImmutable();
+    if (size < parThreshold) return reduce(init, f);
+    return new ParTask(this, f)
+    {
+      Object chunk(int lo, int hi)
+      {
+        Object reduction = init;
+        if (f.arity() == 1)
+          for (int i=lo; i<hi; ++i) reduction = f.call(reduction, item(i));
+        else
+          for (int i=lo; i<hi; ++i) reduction = f.call(reduction, item(i), Long.valueOf(i));
+        return reduction;
+      }
+      Object combine(Object a, Object b) { return c.call(a, b); }
+    }.run();
+  }
+
+  /** Lists smaller than this are processed on the calling thread */
+  static final int parThreshold = 8192;
+
+  /**
+   * ParTask splits the index range of a list, or of any indexed source
+   * of the given size, in half on the common fork/join pool until a
+   * range is no bigger than grain, then calls chunk() for that range
+   * and merges the results with combine().  The first error raised is
+   * saved and rethrown by run().
+   */
+  static abstract class ParTask
+  {
+    ParTask(List list, Func f)
+    {
+      this(list, f, list.size);
+    }
+
+    ParTask(List list, Func f, int size)
+    {
+      this.list  = list;
+      this.f     = f;
+      this.size  = size;
+      this.grain = Math.max(1024, size / (ForkJoinPool.getCommonPoolParallelism() * 4 + 1));
+    }
+
+    abstract Object chunk(int lo, int hi);
+
+    Object combine(Object a, Object b) { return null; }
+
+    final Object call(int i)
+    {
+      if (f.arity() == 1) return f.call(list.item(i));
+      return f.call(list.item(i), Long.valueOf(i));
+    }
+
+    final Object run()
+    {
+      Object r = ForkJoinPool.commonPool().invoke(new Chunk(0, size));
+      if (err == null) return r;
+      if (err instanceof RuntimeException) throw (RuntimeException)err;
+      if (err instanceof Error) throw (Error)err;
+      throw Err.make(err);
+    }
+
+    final class Chunk extends RecursiveTask
+    {
+      Chunk(int lo, int hi) { this.lo = lo; this.hi = hi; }
+
+      protected Object compute()
+      {
+        if (err != null) return null;
+        try
+        {
+          if (hi - lo <= grain) return chunk(lo, hi);
+          int mid = (lo + hi) >>> 1;
+          Chunk a = new Chunk(lo, mid);
+          a.fork();
+          Object rb = new Chunk(mid, hi).compute();
+          Object ra = a.join();
+          if (err != null) return null;
+          return combine(ra, rb);
+        }
+        catch (Throwable e)
+        {
+          synchronized (ParTask.this) { if (err == null) err = e; }
+          return null;
+        }
+      }
+
+      final int lo, hi;
+    }
+
+    final List list;
+    final Func f;
+    final int size;
+    final int grain;
+    volatile Throwable err;
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Conversion
 //////////////////////////////////////////////////////////////////////////
@@ -1239,7 +1544,7 @@ public final class List<V>
 
     if (size == 1)
     {
-      Object v = values[0];
+      Object v = item(0);
       if (f != null) return (String)f.call(v, 0L);
       if (v == null) return "null";
       return toStr(v);
@@ -1250,9 +1555,9 @@ public final class List<V>
     {
       if (i > 0) s.append(sep);
       if (f == null)
-        s.append(values[i]);
+        s.append(item(i));
       else
-        s.append(f.call(values[i], Long.valueOf(i)));
+        s.append(f.call(item(i), Long.valueOf(i)));
     }
     return s.toString();
   }
@@ -1265,7 +1570,7 @@ public final class List<V>
     for (int i=0; i<size; ++i)
     {
       if (i > 0) s.append(", ");
-      s.append(values[i]);
+      s.append(item(i));
     }
     s.append("]");
     return s.toString();
@@ -1280,7 +1585,7 @@ public final class List<V>
     for (int i=0; i<size; ++i)
     {
       if (i > 0) s.append(',').append(' ');
-      s.append(FanObj.trap(values[i], "toCode", null));
+      s.append(FanObj.trap(item(i), "toCode", null));
     }
     s.append(']');
     return s.toString();
@@ -1328,20 +1633,20 @@ public final class List<V>
   public final Object[] asArray(Class of)
   {
     // short circuit if values is already correct array type
-    if (size == values.length && of == values.getClass().getComponentType())
+    if (values != null && base == 0 && size == values.length && of == values.getClass().getComponentType())
       return values;
 
     // make a safe copy of correct length and type
     Object[] r = (Object[]) Array.newInstance(of, size);
-    System.arraycopy(values, 0, r, 0, size);
+    boxItems(0, r, 0, size);
     return r;
   }
 
   public final Object[] toArray()
   {
-    if (values.length == size) return values;
+    if (values != null && base == 0 && values.length == size) return values;
     Object[] r = newArray(size);
-    System.arraycopy(values, 0, r, 0, size);
+    boxItems(0, r, 0, size);
     return r;
   }
 
@@ -1349,7 +1654,7 @@ public final class List<V>
   {
     try
     {
-      System.arraycopy(values, 0, a, 0, size);
+      boxItems(0, a, 0, size);
       return a;
     }
     catch (ArrayIndexOutOfBoundsException e)
@@ -1362,7 +1667,7 @@ public final class List<V>
   {
     try
     {
-      System.arraycopy(values, start, a, 0, len);
+      boxItems(start, a, 0, len);
       return a;
     }
     catch (ArrayIndexOutOfBoundsException e)
@@ -1375,7 +1680,7 @@ public final class List<V>
   {
     try
     {
-      System.arraycopy(values, 0, a, off, len);
+      boxItems(0, a, off, len);
       return a;
     }
     catch (ArrayIndexOutOfBoundsException e)
@@ -1450,14 +1755,7 @@ public final class List<V>
   public final List<V> rw()
   {
     if (!readonly) return this;
-
-    Object[] temp = newArray(size);
-    System.arraycopy(values, 0, temp, 0, size);
-
-    List rw = new List(of);
-    rw.values   = temp;
-    rw.size     = size;
-    rw.readonly = false;
+    List rw = share(new List(of));
     rw.readonlyList = this;
     return rw;
   }
@@ -1468,7 +1766,8 @@ public final class List<V>
     if (readonlyList == null)
     {
       List ro = new List(of);
-      ro.values   = values;
+      ro.setStore(store());
+      ro.base     = base;
       ro.size     = size;
       ro.readonly = true;
       readonlyList = ro;
@@ -1485,11 +1784,21 @@ public final class List<V>
   {
     if (immutable) return this;
 
+    // if every item is already immutable, then the immutable list
+    // shares our values and we copy them on our next modification
+    if (itemsImmutable())
+    {
+      List ro = share(new List(of));
+      ro.readonly = true;
+      ro.immutable = true;
+      return ro;
+    }
+
     // make safe copy
     Object[] temp = newArray(size);
     for (int i=0; i<size; ++i)
     {
-      Object item = values[i];
+      Object item = values[base+i];
       if (item != null)
       {
         if (item instanceof List)
@@ -1509,23 +1818,292 @@ public final class List<V>
     return ro;
   }
 
+  private boolean itemsImmutable()
+  {
+    if (values == null) return true;
+    for (int i=0; i<size; ++i)
+    {
+      Object item = values[base+i];
+      if (item != null && !isImmutable(item)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Make the given list share our values.  Both lists must
+   * copy the values before they are next modified.
+   */
+  private List<V> share(List<V> x)
+  {
+    x.setStore(store());
+    x.base   = base;
+    x.size   = size;
+    x.shared = true;
+    this.shared = true;
+    return x;
+  }
+
   private void modify()
   {
     // if readonly then throw readonly exception
     if (readonly)
       throw ReadonlyErr.make("List is readonly");
 
-    // if we have a cached readonlyList, then detach
-    // it so it remains immutable
-    if (readonlyList != null)
+    // if our values are shared with a readonly, immutable, or dup
+    // list then take a private copy; the original values are never
+    // written again so the other lists remain unchanged
+    if (shared || readonlyList != null)
     {
-      V[] temp = newArray(size);
-      System.arraycopy(values, 0, temp, 0, size);
-      readonlyList.values = temp;
+      Object temp = newStore(storeLength() - base);
+      System.arraycopy(store(), base, temp, 0, size);
+      setStore(temp);
+      base = 0;
+      shared = false;
       readonlyList = null;
     }
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Storage
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the item at the given index, boxing it if packed through the
+   * FanInt/FanFloat box caches.  Caller is responsible for checking
+   * the index against size.
+   */
+  private V item(int i)
+  {
+    if (values != null) return values[base+i];
+    if (longs != null) return (V)FanInt.box(longs[base+i]);
+    return (V)FanFloat.box(doubles[base+i]);
+  }
+
+  /**
+   * Current backing array: V[], long[], or double[].
+   */
+  private Object store()
+  {
+    if (values != null) return values;
+    if (longs != null) return longs;
+    return doubles;
+  }
+
+  /**
+   * Set the backing array to the V[], long[], or double[].
+   */
+  private void setStore(Object store)
+  {
+    if (store instanceof long[])
+    {
+      this.values = null; this.longs = (long[])store; this.doubles = null;
+    }
+    else if (store instanceof double[])
+    {
+      this.values = null; this.longs = null; this.doubles = (double[])store;
+    }
+    else
+    {
+      this.values = (V[])store; this.longs = null; this.doubles = null;
+    }
+  }
+
+  /**
+   * Allocate a new backing array of the current kind.
+   */
+  private Object newStore(int capacity)
+  {
+    if (values != null) return capacity == 0 ? empty : newArray(capacity);
+    if (longs != null) return capacity == 0 ? emptyLongs : new long[capacity];
+    return capacity == 0 ? emptyDoubles : new double[capacity];
+  }
+
+  private int storeLength()
+  {
+    if (values != null) return values.length;
+    if (longs != null) return longs.length;
+    return doubles.length;
+  }
+
+  /**
+   * Can the given value be stored in our packed array.
+   */
+  private boolean fits(Object value)
+  {
+    return longs != null ? value instanceof Long : value instanceof Double;
+  }
+
+  /**
+   * Permanently convert packed storage to boxed storage.
+   */
+  private void unpack()
+  {
+    V[] temp = newArray(storeLength() - base);
+    boxItems(0, temp, 0, size);
+    setStore(temp);
+    base = 0;
+  }
+
+  /**
+   * Copy n items starting at srcOff into the given array at dstOff.
+   */
+  private void boxItems(int srcOff, Object[] dst, int dstOff, int n)
+  {
+    if (srcOff < 0) throw new ArrayIndexOutOfBoundsException();
+    srcOff += base;
+    if (values != null) { System.arraycopy(values, srcOff, dst, dstOff, n); return; }
+    if (n < 0 || srcOff+n > storeLength() || dstOff < 0 || dstOff+n > dst.length)
+      throw new ArrayIndexOutOfBoundsException();
+    if (longs != null)
+      for (int i=0; i<n; ++i) dst[dstOff+i] = FanInt.box(longs[srcOff+i]);
+    else
+      for (int i=0; i<n; ++i) dst[dstOff+i] = FanFloat.box(doubles[srcOff+i]);
+  }
+
+  /**
+   * Copy n items from the source list into our backing array at dstOff;
+   * caller must ensure capacity.  If the source has items which can't
+   * be packed into our array then we unpack first.
+   */
+  private void copyItems(int dstOff, List src, int srcOff, int n)
+  {
+    if (values != null)
+    {
+      if (src.values == null) src.boxItems(srcOff, values, dstOff, n);
+      else System.arraycopy(src.values, src.base+srcOff, values, dstOff, n);
+      return;
+    }
+
+    if (src.values == null)
+    {
+      if (longs != null && src.longs != null) { System.arraycopy(src.longs, src.base+srcOff, longs, dstOff, n); return; }
+      if (doubles != null && src.doubles != null) { System.arraycopy(src.doubles, src.base+srcOff, doubles, dstOff, n); return; }
+    }
+
+    // mixed storage, so box each item and pack it if possible
+    for (int i=0; i<n; ++i)
+    {
+      Object v = src.item(srcOff+i);
+      if (values == null && !fits(v)) unpack();
+      if (values != null) values[dstOff+i] = (V)v;
+      else if (longs != null) longs[dstOff+i] = ((Long)v).longValue();
+      else doubles[dstOff+i] = ((Double)v).doubleValue();
+    }
+  }
+
+  /**
+   * Insert value which fits into our packed array.
+   */
+  private List<V> insertPacked(int i, Object value)
+  {
+    if (storeLength() <= size)
+      grow(size+1);
+    if (i < size)
+      System.arraycopy(store(), i, store(), i+1, size-i);
+    if (longs != null) longs[i] = ((Long)value).longValue();
+    else doubles[i] = ((Double)value).doubleValue();
+    size++;
+    return this;
+  }
+
+  /**
+   * Null out items from start to end exclusive so they may be gc'ed.
+   */
+  private void clearItems(int start, int end)
+  {
+    if (values != null)
+      for (int i=start; i<end; ++i) values[i] = null;
+  }
+
+  private void swapItems(int a, int b)
+  {
+    if (values != null)
+    {
+      V t = values[a]; values[a] = values[b]; values[b] = t;
+    }
+    else if (longs != null)
+    {
+      long t = longs[a]; longs[a] = longs[b]; longs[b] = t;
+    }
+    else
+    {
+      double t = doubles[a]; doubles[a] = doubles[b]; doubles[b] = t;
+    }
+  }
+
+  /**
+   * Search packed items from start to end exclusive by step for an
+   * item equal to value.  Boxed Long and Double equality are by value,
+   * so there is no distinction between same and equals.
+   */
+  private int indexPacked(Object value, int start, int end, int step)
+  {
+    if (longs != null)
+    {
+      if (!(value instanceof Long)) return -1;
+      long x = ((Long)value).longValue();
+      for (int i=start; i!=end; i+=step)
+        if (longs[base+i] == x) return i;
+    }
+    else
+    {
+      if (!(value instanceof Double)) return -1;
+      long x = Double.doubleToLongBits(((Double)value).doubleValue());
+      for (int i=start; i!=end; i+=step)
+        if (Double.doubleToLongBits(doubles[base+i]) == x) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Return if this list contains an Int equal to x without boxing it.
+   */
+  private boolean containsLong(long x)
+  {
+    if (longs != null)
+    {
+      for (int i=0; i<size; ++i)
+        if (longs[base+i] == x) return true;
+    }
+    else if (values != null)
+    {
+      for (int i=0; i<size; ++i)
+      {
+        Object obj = values[base+i];
+        if (obj instanceof Long && ((Long)obj).longValue() == x) return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return if this list contains a Float equal to x without boxing it.
+   */
+  private boolean containsDouble(double x)
+  {
+    long bits = Double.doubleToLongBits(x);
+    if (doubles != null)
+    {
+      for (int i=0; i<size; ++i)
+        if (Double.doubleToLongBits(doubles[base+i]) == bits) return true;
+    }
+    else if (values != null)
+    {
+      for (int i=0; i<size; ++i)
+      {
+        Object obj = values[base+i];
+        if (obj instanceof Double && Double.doubleToLongBits(((Double)obj).doubleValue()) == bits) return true;
+      }
+    }
+    return false;
+  }
+
+  private static Long toIndex(int i)
+  {
+    return i < 0 ? null : Long.valueOf(i);
+  }
+
+
 //////////////////////////////////////////////////////////////////////////
 // java.util.List
 //////////////////////////////////////////////////////////////////////////
@@ -1539,7 +2117,7 @@ public final class List<V>
   public final V get(int index)
   {
     if (index < 0 || index >= size) throw IndexErr.make(""+index);
-    return values[index];
+    return item(index);
   }
 
   public final V set(int index, V value)
@@ -1654,7 +2232,7 @@ public final class List<V>
     public Object next()
     {
       if (cursor >= size) throw new NoSuchElementException();
-      return (V) values[cursor++];
+      return item(cursor++);
     }
 
     public int nextIndex()
@@ -1672,7 +2250,7 @@ public final class List<V>
       int i = cursor - 1;
       if (cursor < 0) throw new NoSuchElementException();
       cursor = i;
-      return (V) values[cursor];
+      return item(cursor);
     }
 
     public void set(Object e)
@@ -1698,12 +2276,18 @@ public final class List<V>
 //////////////////////////////////////////////////////////////////////////
 
   private static final Object[] empty = new Object[0];
+  private static final long[] emptyLongs = new long[0];
+  private static final double[] emptyDoubles = new double[0];
 
   private Type of;
-  private V[] values;
+  private V[] values;              // boxed items or null if packed
+  private long[] longs;            // packed items of sys::Int
+  private double[] doubles;        // packed items of sys::Float
+  private int base;                // index of item 0 in backing array
   private int size;
   private boolean readonly;
   private boolean immutable;
+  private boolean shared;          // values shared with another list
   private List<V> readonlyList;
 
 }
@@ -4,11 +4,16 @@
 //
 // History:
 //   17 Mar 06  Brian Frank  Creation
+//   17 Oct 26  agent  Copy-on-write sharing for immutable/dup
+//   17 Oct 26  agent  Open addressing for Int and Str keys
+//   17 Oct 26  agent  Compact arrays for small Str maps
 //
 package fan.sys;
 
 import java.lang.Thread;
+import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -20,7 +25,17 @@ import fanx.serial.*;
 import fanx.util.OpUtil;
 
 /**
- * Map is a hashmap of key value pairs.
+ * Map is a hashmap of key value pairs.  Maps keyed by Int or Str use
+ * an open addressing table (IntMap, StrMap) which stores keys and
+ * values in flat arrays; all other maps use a java.util.HashMap.
+ * Maps keyed by Str start out as a SmallMap which is promoted to
+ * a StrMap, LinkedHashMap, or CIHashMap once it outgrows its arrays.
+ *
+ * Immutable, readonly, and dup maps may share their table with the map
+ * they came from until either one is modified (see share and modify).
+ * This is share until first write rather than a persistent structure:
+ * the first modification of a shared map copies the whole table, so
+ * dup().set on a large immutable map is still O(n).
  */
 public final class Map<K,V>
   extends FanObj
@@ -43,7 +58,7 @@ public final class Map<K,V>
       throw ArgErr.make("Non-nullable map type required: " + type);
     }
     if (t.k.isNullable()) throw ArgErr.make("Map key type cannot be nullable: " + t.k);
-    return new Map(t, new HashMap());
+    return new Map(t, newMap(t.k));
   }
 
   /** Construct map with given key and value types */
@@ -54,21 +69,36 @@ public final class Map<K,V>
 
   Map(Type k, Type v)
   {
-    this(new MapType(k, v), new HashMap());
+    this(new MapType(k, v));
   }
 
   Map(MapType type)
   {
-    this(type, new HashMap());
+    this(type, newMap(type.k));
   }
 
   Map(MapType type, HashMap map)
+  {
+    this(type, (AbstractMap)map);
+  }
+
+  private Map(MapType type, AbstractMap map)
   {
     if (type == null || map == null) { Thread.dumpStack(); throw NullErr.make(); }
     this.type = type;
     this.map  = map;
   }
 
+  /**
+   * Allocate the empty hash map used for the given key type.
+   */
+  private static AbstractMap newMap(Type k)
+  {
+    if (k == Sys.IntType) return new IntMap();
+    if (k == Sys.StrType) return new SmallMap(false, false);
+    return new HashMap();
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Identity
 //////////////////////////////////////////////////////////////////////////
@@ -157,7 +187,7 @@ public final class Map<K,V>
       throw NullErr.make("key is null");
     if (!isImmutable(key))
       throw NotImmutableErr.make("key is not immutable: " + typeof(key));
-    map.put(key, value);
+    doPut(key, value);
     return this;
   }
 
@@ -176,7 +206,7 @@ public final class Map<K,V>
       throw NotImmutableErr.make("key is not immutable: " + typeof(key));
     if (map.containsKey(key))
       throw ArgErr.make("Key already mapped: " + key);
-    map.put(key, value);
+    doPut(key, value);
     return this;
   }
 
@@ -206,7 +236,7 @@ public final class Map<K,V>
     while (it.hasNext())
     {
       Entry<K,V> e = (Entry)it.next();
-      map.put(e.getKey(), e.getValue());
+      doPut(e.getKey(), e.getValue());
     }
     return this;
   }
@@ -273,10 +303,28 @@ public final class Map<K,V>
     return map.remove(key);
   }
 
+  /**
+   * Put into our hash map; if a small map is full then promote it,
+   * and if an open map can't store the key because it is not the
+   * expected type, then fall back to HashMap.
+   */
+  private void doPut(K key, V value)
+  {
+    if (map instanceof SmallMap && !((SmallMap)map).fits(key))
+      map = ((SmallMap)map).promote();
+    if (map instanceof OpenMap && !((OpenMap)map).accepts(key))
+      map = new HashMap(map);
+    map.put(key, value);
+  }
+
   public final Map<K,V> dup()
   {
+    // readonly maps never write their hash map, so the dup can
+    // share it and defer the clone until it is first modified
+    if (readonly) return share(new Map(type));
+
     Map dup = new Map(type);
-    dup.map = (HashMap)this.map.clone();
+    dup.map = copyMap();
     return dup;
   }
 
@@ -289,6 +337,7 @@ public final class Map<K,V>
 
   public final boolean caseInsensitive()
   {
+    if (map instanceof SmallMap) return ((SmallMap)map).caseInsensitive;
     return map instanceof CIHashMap;
   }
 
@@ -308,13 +357,14 @@ public final class Map<K,V>
     if (caseInsensitive() == v) return;
 
     if (v)
-      map = new CIHashMap();
+      map = new SmallMap(false, true);
     else
-      map = new HashMap();
+      map = newMap(type.k);
   }
 
   public final boolean ordered()
   {
+    if (map instanceof SmallMap) return ((SmallMap)map).ordered;
     return map instanceof LinkedHashMap;
   }
 
@@ -331,9 +381,9 @@ public final class Map<K,V>
     if (ordered() == v) return;
 
     if (v)
-      map = new LinkedHashMap();
+      map = type.k == Sys.StrType ? new SmallMap(true, false) : new LinkedHashMap();
     else
-      map = new HashMap();
+      map = newMap(type.k);
   }
 
   public final V def() { return def; }
@@ -397,6 +447,11 @@ public final class Map<K,V>
     }
   }
 
+  public final Stream stream()
+  {
+    return Stream.make(new Stream.MapSource(this));
+  }
+
   public final Object eachWhile(Func f)
   {
     Iterator it = pairsIterator();
@@ -620,9 +675,7 @@ public final class Map<K,V>
   {
     if (!readonly) return this;
 
-    Map rw = new Map(type);
-    rw.map = (HashMap)map.clone();
-    rw.readonly = false;
+    Map rw = share(new Map(type));
     rw.readonlyMap = this;
     rw.def = def;
     return rw;
@@ -651,6 +704,29 @@ public final class Map<K,V>
   {
     if (immutable) return this;
 
+    // if every value is already immutable, then the immutable map
+    // shares our hash map and we clone it on our next modification
+    if (valsImmutable())
+    {
+      Map ro = share(new Map(type));
+      ro.readonly = true;
+      ro.immutable = true;
+      ro.def = def;
+      return ro;
+    }
+
+    // open maps copy their arrays and make the values immutable in place
+    if (map instanceof OpenMap)
+    {
+      OpenMap temp = ((OpenMap)map).dup();
+      temp.toImmutableVals();
+      Map ro = new Map(type, temp);
+      ro.readonly = true;
+      ro.immutable = true;
+      ro.def = def;
+      return ro;
+    }
+
     // allocate new map of correct type
     HashMap temp;
     if (caseInsensitive()) temp = new CIHashMap(map.size()*2+3);
@@ -679,31 +755,77 @@ public final class Map<K,V>
     return ro;
   }
 
+  private boolean valsImmutable()
+  {
+    Iterator it = map.values().iterator();
+    while (it.hasNext())
+    {
+      Object val = it.next();
+      if (val != null && !isImmutable(val)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Make the given map share our hash map.  Both maps must
+   * clone the hash map before they are next modified.
+   */
+  private Map<K,V> share(Map<K,V> x)
+  {
+    x.map = map;
+    x.shared = true;
+    this.shared = true;
+    return x;
+  }
+
   private void modify()
   {
     // if readonly then throw readonly exception
     if (readonly)
       throw ReadonlyErr.make("Map is readonly");
 
-    // if we have a cached readonlyMap, then detach
-    // it so it remains immutable
-    if (readonlyMap != null)
+    // if our hash map is shared with a readonly, immutable, or dup
+    // map then take a private clone; the original hash map is never
+    // written again so the other maps remain unchanged
+    if (shared || readonlyMap != null)
     {
-      readonlyMap.map = (HashMap)map.clone();
+      map = copyMap();
+      shared = false;
       readonlyMap = null;
     }
   }
 
+  /**
+   * Return a private copy of our hash map.
+   */
+  private AbstractMap copyMap()
+  {
+    if (map instanceof OpenMap) return ((OpenMap)map).dup();
+    return (AbstractMap)((HashMap)map).clone();
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // Java
 //////////////////////////////////////////////////////////////////////////
 
   public int sz() { return map.size(); }
 
+  /**
+   * Return the value slots of an Int or Str keyed table so Stream can
+   * split it by index, or null if the storage cannot be indexed.  Empty
+   * slots are null and null values are OpenMap.NULL.
+   */
+  Object[] openVals()
+  {
+    return map instanceof OpenMap ? ((OpenMap)map).vals : null;
+  }
+
   public Iterator pairsIterator()
   {
     if (map instanceof CIHashMap)
       return ((CIHashMap)map).pairs().iterator();
+    else if (map instanceof OpenMap)
+      return ((OpenMap)map).pairs();
     else
       return map.entrySet().iterator();
   }
@@ -717,7 +839,9 @@ public final class Map<K,V>
   public HashMap toJava()
   {
     modify();
-    return map;
+    if (map instanceof SmallMap) map = ((SmallMap)map).promote();
+    if (!(map instanceof HashMap)) map = new HashMap(map);
+    return (HashMap)map;
   }
 
 //////////////////////////////////////////////////////////////////////////
@@ -757,8 +881,8 @@ public final class Map<K,V>
 
     public boolean equals(Object obj)
     {
-      if (!(obj instanceof HashMap)) return false;
-      HashMap that = (HashMap)obj;
+      if (!(obj instanceof java.util.Map)) return false;
+      java.util.Map that = (java.util.Map)obj;
       if (size() != that.size()) return false;
       Iterator it = pairs().iterator();
       while (it.hasNext())
@@ -811,6 +935,597 @@ public final class Map<K,V>
     final int hash;
   }
 
+//////////////////////////////////////////////////////////////////////////
+// OpenMap (Open Addressing)
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * OpenMap is a hash table using open addressing with linear probing.
+   * Keys and values are stored in parallel arrays so there are no entry
+   * objects, and removal shifts the following entries back rather than
+   * leaving tombstones.  A null slot in vals is empty; null values are
+   * stored as NULL.  Slots are chosen with Fibonacci hashing so that
+   * keys with patterned low bits still spread across the table.
+   */
+  static abstract class OpenMap extends AbstractMap
+  {
+    /** Can the given key be stored in this map */
+    abstract boolean accepts(Object key);
+
+    /** Return the slot of the given key or -1 if not mapped */
+    abstract int slotOf(Object key);
+
+    /** Return the boxed key stored in the given slot */
+    abstract Object keyAt(int slot);
+
+    /** Return the home slot of the key stored in the given slot */
+    abstract int homeOf(int slot);
+
+    /** Move the key in slot from to slot to */
+    abstract void moveKey(int from, int to);
+
+    /** Release the key in an emptied slot */
+    void clearKey(int slot) {}
+
+    /** Allocate new arrays of given capacity and reinsert entries */
+    abstract void rehash(int capacity);
+
+    /** Copy this map's arrays into a new map */
+    abstract OpenMap dup();
+
+    public final int size() { return size; }
+
+    public final boolean isEmpty() { return size == 0; }
+
+    public final Object get(Object key)
+    {
+      int slot = slotOf(key);
+      return slot < 0 ? null : unmask(vals[slot]);
+    }
+
+    public final boolean containsKey(Object key)
+    {
+      return slotOf(key) >= 0;
+    }
+
+    public final boolean containsValue(Object val)
+    {
+      Object[] vals = this.vals;
+      for (int i=0; i<vals.length; ++i)
+      {
+        Object v = vals[i];
+        if (v != null && OpUtil.compareEQ(unmask(v), val)) return true;
+      }
+      return false;
+    }
+
+    public final Object remove(Object key)
+    {
+      int slot = slotOf(key);
+      if (slot < 0) return null;
+      Object old = unmask(vals[slot]);
+      delete(slot);
+      return old;
+    }
+
+    public void clear()
+    {
+      Arrays.fill(vals, null);
+      size = 0;
+    }
+
+    /**
+     * Clear the given slot, then shift back each following entry
+     * whose home slot is not cyclically between the hole and itself.
+     */
+    void delete(int hole)
+    {
+      Object[] vals = this.vals;
+      int mask = vals.length - 1;
+      int i = hole;
+      while (true)
+      {
+        i = (i + 1) & mask;
+        if (vals[i] == null) break;
+        int home = homeOf(i);
+        if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i))
+        {
+          moveKey(i, hole);
+          vals[hole] = vals[i];
+          hole = i;
+        }
+      }
+      vals[hole] = null;
+      clearKey(hole);
+      size--;
+    }
+
+    /**
+     * Grow the table if adding one more entry would exceed 3/4 full.
+     */
+    final void ensureCapacity()
+    {
+      int cap = vals.length;
+      if (cap == 0) rehash(8);
+      else if (size >= cap - (cap >> 2)) rehash(cap << 1);
+    }
+
+    final void toImmutableVals()
+    {
+      Object[] vals = this.vals;
+      for (int i=0; i<vals.length; ++i)
+      {
+        Object v = vals[i];
+        if (v != null && v != NULL) vals[i] = FanObj.toImmutable(v);
+      }
+    }
+
+    final Object[] copyVals()
+    {
+      Object[] copy = new Object[vals.length];
+      System.arraycopy(vals, 0, copy, 0, vals.length);
+      return copy;
+    }
+
+    final int shiftFor(int capacity)
+    {
+      return Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /** Iterate the entries reusing one Entry instance */
+    final Iterator pairs() { return new OpenIterator(this, true); }
+
+    public final Set entrySet()
+    {
+      return new AbstractSet()
+      {
+        public int size() { return size; }
+        public Iterator iterator() { return new OpenIterator(OpenMap.this, false); }
+      };
+    }
+
+    static Object mask(Object v) { return v == null ? NULL : v; }
+    static Object unmask(Object v) { return v == NULL ? null : v; }
+    static final Object NULL = new Object();
+    static final Object[] noVals = new Object[0];
+
+    Object[] vals = noVals;  // values or NULL, null if slot is empty
+    int size;                // number of entries
+    int shift;               // 64 or 32 minus log2 of capacity
+  }
+
+  static final class OpenIterator implements Iterator
+  {
+    OpenIterator(OpenMap map, boolean reuse)
+    {
+      this.map = map;
+      this.entry = reuse ? new OpenEntry(map) : null;
+      this.next = advance(0);
+    }
+
+    public boolean hasNext()
+    {
+      return rest != null ? restIndex < rest.length : next >= 0;
+    }
+
+    public Object next()
+    {
+      int slot;
+      if (rest != null)
+      {
+        if (restIndex >= rest.length) throw new java.util.NoSuchElementException();
+        slot = map.slotOf(rest[restIndex++]);
+      }
+      else
+      {
+        slot = next;
+        if (slot < 0) throw new java.util.NoSuchElementException();
+        next = advance(slot + 1);
+      }
+      last = slot;
+      OpenEntry e = entry != null ? entry : new OpenEntry(map);
+      e.set(slot);
+      return e;
+    }
+
+    /**
+     * Delete the last entry returned.  Backward shift deletion may move
+     * the following entries into the emptied slot, so we rescan from it.
+     * If those entries wrap around to the start of the table, then entries
+     * we already returned may be moved into the slots still ahead of us;
+     * in that case we finish by looking up a snapshot of the keys ahead.
+     */
+    public void remove()
+    {
+      int slot = last;
+      if (slot < 0) throw new IllegalStateException();
+      last = -1;
+      if (rest == null && wraps(slot)) rest = keysAfter(slot);
+      map.delete(slot);
+      if (rest == null) next = advance(slot);
+    }
+
+    private int advance(int i)
+    {
+      Object[] vals = map.vals;
+      for (; i<vals.length; ++i) if (vals[i] != null) return i;
+      return -1;
+    }
+
+    /**
+     * Return if the run of entries following slot wraps to slot 0.
+     */
+    private boolean wraps(int slot)
+    {
+      Object[] vals = map.vals;
+      if (vals[0] == null) return false;
+      for (int i=slot+1; i<vals.length; ++i) if (vals[i] == null) return false;
+      return true;
+    }
+
+    /**
+     * Return the keys stored after slot which we have yet to return.
+     */
+    private Object[] keysAfter(int slot)
+    {
+      Object[] vals = map.vals;
+      ArrayList acc = new ArrayList();
+      for (int i=slot+1; i<vals.length; ++i)
+        if (vals[i] != null) acc.add(map.keyAt(i));
+      return acc.toArray();
+    }
+
+    final OpenMap map;
+    final OpenEntry entry;
+    int next;           // next slot to return or -1
+    int last = -1;      // slot last returned or -1 if removed
+    Object[] rest;      // keys left to return once a remove wrapped
+    int restIndex;      // index into rest
+  }
+
+  static final class OpenEntry implements Entry
+  {
+    OpenEntry(OpenMap map) { this.map = map; }
+    void set(int slot) { this.slot = slot; this.key = map.keyAt(slot); this.val = OpenMap.unmask(map.vals[slot]); }
+    public Object getKey() { return key; }
+    public Object getValue() { return val; }
+    public Object setValue(Object v) { Object old = val; map.vals[slot] = OpenMap.mask(v); val = v; return old; }
+    public int hashCode() { return key.hashCode() ^ (val == null ? 0 : val.hashCode()); }
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Entry)) return false;
+      Entry e = (Entry)o;
+      return key.equals(e.getKey()) && OpUtil.compareEQ(val, e.getValue());
+    }
+    public String toString() { return key + "=" + val; }
+    final OpenMap map;
+    int slot;
+    Object key;
+    Object val;
+  }
+
+  /**
+   * IntMap is an OpenMap keyed by sys::Int stored as long.  Probing
+   * only touches the long keys; the Long each key was put with is kept
+   * in a parallel array so iteration returns it without boxing.
+   */
+  static final class IntMap extends OpenMap
+  {
+    boolean accepts(Object key) { return key instanceof Long; }
+
+    int index(long k) { return (int)((k * 0x9E3779B97F4A7C15L) >>> shift); }
+
+    int slotOf(Object key)
+    {
+      if (size == 0 || !(key instanceof Long)) return -1;
+      long k = ((Long)key).longValue();
+      long[] keys = this.keys;
+      Object[] vals = this.vals;
+      int mask = vals.length - 1;
+      for (int i = index(k); vals[i] != null; i = (i + 1) & mask)
+        if (keys[i] == k) return i;
+      return -1;
+    }
+
+    Object keyAt(int slot) { return boxes[slot]; }
+
+    int homeOf(int slot) { return index(keys[slot]); }
+
+    void moveKey(int from, int to)
+    {
+      keys[to] = keys[from];
+      boxes[to] = boxes[from];
+    }
+
+    void clearKey(int slot) { boxes[slot] = null; }
+
+    public Object put(Object key, Object val)
+    {
+      long k = ((Long)key).longValue();
+      int mask = vals.length - 1;
+      if (size > 0)
+      {
+        for (int i = index(k); vals[i] != null; i = (i + 1) & mask)
+          if (keys[i] == k) { Object old = vals[i]; vals[i] = mask(val); return unmask(old); }
+      }
+      ensureCapacity();
+      mask = vals.length - 1;
+      int i = index(k);
+      while (vals[i] != null) i = (i + 1) & mask;
+      keys[i] = k;
+      boxes[i] = key;
+      vals[i] = mask(val);
+      size++;
+      return null;
+    }
+
+    public void clear()
+    {
+      super.clear();
+      Arrays.fill(boxes, null);
+    }
+
+    void rehash(int capacity)
+    {
+      long[] oldKeys = keys;
+      Object[] oldBoxes = boxes;
+      Object[] oldVals = vals;
+      keys = new long[capacity];
+      boxes = new Object[capacity];
+      vals = new Object[capacity];
+      shift = shiftFor(capacity) + 32;
+      int mask = capacity - 1;
+      for (int j=0; j<oldVals.length; ++j)
+      {
+        if (oldVals[j] == null) continue;
+        int i = index(oldKeys[j]);
+        while (vals[i] != null) i = (i + 1) & mask;
+        keys[i] = oldKeys[j];
+        boxes[i] = oldBoxes[j];
+        vals[i] = oldVals[j];
+      }
+    }
+
+    OpenMap dup()
+    {
+      IntMap x = new IntMap();
+      x.keys = new long[keys.length];
+      System.arraycopy(keys, 0, x.keys, 0, keys.length);
+      x.boxes = new Object[boxes.length];
+      System.arraycopy(boxes, 0, x.boxes, 0, boxes.length);
+      x.vals = copyVals();
+      x.size = size;
+      x.shift = shift;
+      return x;
+    }
+
+    private static final long[] noKeys = new long[0];
+    private static final Object[] noBoxes = new Object[0];
+    long[] keys = noKeys;
+    Object[] boxes = noBoxes;
+  }
+
+  /**
+   * StrMap is an OpenMap keyed by sys::Str which caches each
+   * key's hash code to skip most string compares while probing.
+   */
+  static final class StrMap extends OpenMap
+  {
+    boolean accepts(Object key) { return key instanceof String; }
+
+    int index(int h) { return (h * 0x9E3779B9) >>> shift; }
+
+    int slotOf(Object key)
+    {
+      if (size == 0 || !(key instanceof String)) return -1;
+      int h = key.hashCode();
+      String[] keys = this.keys;
+      int[] hashes = this.hashes;
+      Object[] vals = this.vals;
+      int mask = vals.length - 1;
+      for (int i = index(h); vals[i] != null; i = (i + 1) & mask)
+        if (hashes[i] == h && (keys[i] == key || keys[i].equals(key))) return i;
+      return -1;
+    }
+
+    Object keyAt(int slot) { return keys[slot]; }
+
+    int homeOf(int slot) { return index(hashes[slot]); }
+
+    void moveKey(int from, int to)
+    {
+      keys[to] = keys[from];
+      hashes[to] = hashes[from];
+    }
+
+    void clearKey(int slot) { keys[slot] = null; }
+
+    public Object put(Object key, Object val)
+    {
+      String k = (String)key;
+      int h = k.hashCode();
+      int mask = vals.length - 1;
+      if (size > 0)
+      {
+        for (int i = index(h); vals[i] != null; i = (i + 1) & mask)
+          if (hashes[i] == h && (keys[i] == k || keys[i].equals(k)))
+            { Object old = vals[i]; vals[i] = mask(val); return unmask(old); }
+      }
+      ensureCapacity();
+      mask = vals.length - 1;
+      int i = index(h);
+      while (vals[i] != null) i = (i + 1) & mask;
+      keys[i] = k;
+      hashes[i] = h;
+      vals[i] = mask(val);
+      size++;
+      return null;
+    }
+
+    public void clear()
+    {
+      super.clear();
+      Arrays.fill(keys, null);
+    }
+
+    void rehash(int capacity)
+    {
+      String[] oldKeys = keys;
+      int[] oldHashes = hashes;
+      Object[] oldVals = vals;
+      keys = new String[capacity];
+      hashes = new int[capacity];
+      vals = new Object[capacity];
+      shift = shiftFor(capacity);
+      int mask = capacity - 1;
+      for (int j=0; j<oldVals.length; ++j)
+      {
+        if (oldVals[j] == null) continue;
+        int i = index(oldHashes[j]);
+        while (vals[i] != null) i = (i + 1) & mask;
+        keys[i] = oldKeys[j];
+        hashes[i] = oldHashes[j];
+        vals[i] = oldVals[j];
+      }
+    }
+
+    OpenMap dup()
+    {
+      StrMap x = new StrMap();
+      x.keys = new String[keys.length];
+      System.arraycopy(keys, 0, x.keys, 0, keys.length);
+      x.hashes = new int[hashes.length];
+      System.arraycopy(hashes, 0, x.hashes, 0, hashes.length);
+      x.vals = copyVals();
+      x.size = size;
+      x.shift = shift;
+      return x;
+    }
+
+    private static final String[] noKeys = new String[0];
+    private static final int[] noHashes = new int[0];
+    String[] keys = noKeys;
+    int[] hashes = noHashes;
+  }
+
+  /**
+   * SmallMap is an OpenMap keyed by sys::Str for maps of up to max
+   * entries.  Keys and values are packed at the front of the arrays
+   * in insertion order and looked up with a linear scan, so it also
+   * provides the ordered and caseInsensitive variants.  Once a new
+   * key won't fit, the Map promotes it to a StrMap, LinkedHashMap,
+   * or CIHashMap.
+   */
+  static final class SmallMap extends OpenMap
+  {
+    SmallMap(boolean ordered, boolean caseInsensitive)
+    {
+      this.ordered = ordered;
+      this.caseInsensitive = caseInsensitive;
+    }
+
+    boolean accepts(Object key) { return key instanceof String; }
+
+    /** Can the given key be put without growing past max */
+    boolean fits(Object key)
+    {
+      return key instanceof String && (size < max || slotOf(key) >= 0);
+    }
+
+    int slotOf(Object key)
+    {
+      if (size == 0 || !(key instanceof String)) return -1;
+      String k = (String)key;
+      String[] keys = this.keys;
+      if (caseInsensitive)
+      {
+        for (int i=0; i<size; ++i)
+          if (FanStr.equalsIgnoreCase(keys[i], k)) return i;
+      }
+      else
+      {
+        int h = k.hashCode();
+        for (int i=0; i<size; ++i)
+          if (keys[i] == k || (keys[i].hashCode() == h && keys[i].equals(k))) return i;
+      }
+      return -1;
+    }
+
+    Object keyAt(int slot) { return keys[slot]; }
+
+    int homeOf(int slot) { return slot; }
+
+    void moveKey(int from, int to) { keys[to] = keys[from]; }
+
+    void clearKey(int slot) { keys[slot] = null; }
+
+    public Object put(Object key, Object val)
+    {
+      String k = (String)key;
+      int i = slotOf(k);
+      if (i >= 0) { Object old = vals[i]; vals[i] = mask(val); return unmask(old); }
+      if (size == vals.length) rehash(size == 0 ? 4 : size << 1);
+      keys[size] = k;
+      vals[size] = mask(val);
+      size++;
+      return null;
+    }
+
+    /**
+     * Shift the following entries back over the hole to keep
+     * the entries packed and in insertion order.
+     */
+    void delete(int hole)
+    {
+      int n = --size - hole;
+      System.arraycopy(keys, hole+1, keys, hole, n);
+      System.arraycopy(vals, hole+1, vals, hole, n);
+      vals[size] = null;
+      clearKey(size);
+    }
+
+    public void clear()
+    {
+      super.clear();
+      Arrays.fill(keys, null);
+    }
+
+    void rehash(int capacity)
+    {
+      keys = Arrays.copyOf(keys, capacity);
+      vals = Arrays.copyOf(vals, capacity);
+    }
+
+    OpenMap dup()
+    {
+      SmallMap x = new SmallMap(ordered, caseInsensitive);
+      x.keys = new String[keys.length];
+      System.arraycopy(keys, 0, x.keys, 0, keys.length);
+      x.vals = copyVals();
+      x.size = size;
+      return x;
+    }
+
+    /**
+     * Copy the entries into the hash map used for bigger maps.
+     */
+    AbstractMap promote()
+    {
+      AbstractMap x;
+      if (caseInsensitive) x = new CIHashMap(max*4);
+      else if (ordered) x = new LinkedHashMap(max*4);
+      else x = new StrMap();
+      for (int i=0; i<size; ++i) x.put(keys[i], unmask(vals[i]));
+      return x;
+    }
+
+    static final int max = 8;
+    private static final String[] noKeys = new String[0];
+    final boolean ordered;
+    final boolean caseInsensitive;
+    String[] keys = noKeys;
+  }
+
 //////////////////////////////////////////////////////////////////////////
 // java.util.Map
 //////////////////////////////////////////////////////////////////////////
@@ -865,10 +1580,11 @@ public final class Map<K,V>
 //////////////////////////////////////////////////////////////////////////
 
   private MapType type;
-  private HashMap<K,V> map;
+  private AbstractMap<K,V> map;
   private Map<K,V> readonlyMap;
   private boolean readonly;
   private boolean immutable;
+  private boolean shared;          // hash map shared with another map
   private V def;
 
 }
@@ -114,7 +114,7 @@ public class PathFile
   {
     try
     {
-      Stream<PathFile> s = Files.list(this.path).filter(new Predicate<Path>() {
+      java.util.stream.Stream<PathFile> s = Files.list(this.path).filter(new Predicate<Path>() {
         @Override
         public boolean test(Path child) {
           if (mode == 'd' && !Files.isDirectory(child)) return false;
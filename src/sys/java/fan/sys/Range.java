@@ -154,6 +154,11 @@ public final class Range
     }
   }
 
+  public final Stream stream()
+  {
+    return Stream.make(new Stream.RangeSource(this));
+  }
+
   public final Object eachWhile(Func f)
   {
     long start = this.start;
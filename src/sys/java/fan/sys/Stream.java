@@ -0,0 +1,569 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.sys;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Stream is a lazy, single use pipeline.  Each stage method returns a
+ * new Stream linked back to its upstream stream.  A terminal builds a
+ * chain of Sinks from the terminal back up to the source, then the
+ * source pushes each item through the chain so all stages are fused
+ * into one pass.  Early termination is signaled by setting Run.stop
+ * which the source checks before producing each item.
+ */
+public final class Stream
+  extends FanObj
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Construction
+//////////////////////////////////////////////////////////////////////////
+
+  static Stream make(Source src) { return new Stream(src, null, null, false); }
+
+  private Stream(Source src, Stream up, Stage stage, boolean par)
+  {
+    this.src   = src;
+    this.up    = up;
+    this.stage = stage;
+    this.par   = par;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Obj
+//////////////////////////////////////////////////////////////////////////
+
+  public Type typeof() { return Sys.StreamType; }
+
+//////////////////////////////////////////////////////////////////////////
+// Stages
+//////////////////////////////////////////////////////////////////////////
+
+  public final Stream filter(Func f) { return add(new Filter(f, true)); }
+
+  public final Stream exclude(Func f) { return add(new Filter(f, false)); }
+
+  public final Stream map(Func f)
+  {
+    return add(new Stage(f)
+    {
+      Sink wrap(final Sink down)
+      {
+        return new Sink(down.run)
+        {
+          void accept(Object item) { down.accept(f.call(item)); }
+        };
+      }
+    });
+  }
+
+  public final Stream flatMap(Func f)
+  {
+    return add(new Stage(f)
+    {
+      Sink wrap(final Sink down)
+      {
+        return new Sink(down.run)
+        {
+          void accept(Object item)
+          {
+            List list = (List)f.call(item);
+            for (int i=0; i<list.sz() && !run.stop; ++i)
+              down.accept(list.get(i));
+          }
+        };
+      }
+    });
+  }
+
+  public final Stream skip(final long n)
+  {
+    if (n < 0) throw ArgErr.make("Invalid skip: " + n);
+    return add(new Stage(null)
+    {
+      boolean seq() { return true; }
+      Sink wrap(final Sink down)
+      {
+        return new Sink(down.run)
+        {
+          void accept(Object item)
+          {
+            if (skipped < n) ++skipped;
+            else down.accept(item);
+          }
+          long skipped;
+        };
+      }
+    });
+  }
+
+  public final Stream limit(final long n)
+  {
+    if (n < 0) throw ArgErr.make("Invalid limit: " + n);
+    return add(new Stage(null)
+    {
+      boolean seq() { return true; }
+      Sink wrap(final Sink down)
+      {
+        if (n == 0) down.run.stop = true;
+        return new Sink(down.run)
+        {
+          void accept(Object item)
+          {
+            down.accept(item);
+            if (++taken >= n) run.stop = true;
+          }
+          long taken;
+        };
+      }
+    });
+  }
+
+  public final Stream takeWhile(Func f)
+  {
+    return add(new Stage(f)
+    {
+      boolean seq() { return true; }
+      Sink wrap(final Sink down)
+      {
+        return new Sink(down.run)
+        {
+          void accept(Object item)
+          {
+            if (f.call(item) == Boolean.TRUE) down.accept(item);
+            else run.stop = true;
+          }
+        };
+      }
+    });
+  }
+
+  public final Stream par()
+  {
+    use();
+    return new Stream(src, this, null, true);
+  }
+
+  private Stream add(Stage stage)
+  {
+    use();
+    return new Stream(src, this, stage, par);
+  }
+
+  private void use()
+  {
+    if (used) throw Err.make("Stream already used");
+    used = true;
+  }
+
+  static final class Filter extends Stage
+  {
+    Filter(Func f, boolean match) { super(f); this.match = match; }
+
+    Sink wrap(final Sink down)
+    {
+      return new Sink(down.run)
+      {
+        void accept(Object item)
+        {
+          if ((f.call(item) == Boolean.TRUE) == match) down.accept(item);
+        }
+      };
+    }
+
+    final boolean match;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Terminals
+//////////////////////////////////////////////////////////////////////////
+
+  public final void each(Func f)
+  {
+    run(new Term(f, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item) { f.call(item); }
+        };
+      }
+      boolean splits() { return true; }
+    });
+  }
+
+  public final List toList() { return toList(Sys.ObjType.toNullable()); }
+  public final List toList(final Type of)
+  {
+    return (List)run(new Term(null, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item) { acc.add(item); }
+          Object result() { return acc; }
+          final List acc = new List(of);
+        };
+      }
+      boolean splits() { return true; }
+      Object combine(Object a, Object b) { return ((List)a).addAll((List)b); }
+    });
+  }
+
+  public final Object reduce(Object init, Func f) { return reduce(init, f, null); }
+  public final Object reduce(final Object init, Func f, Func combine)
+  {
+    return run(new Term(f, combine)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item) { reduction = f.call(reduction, item); }
+          Object result() { return reduction; }
+          Object reduction = init;
+        };
+      }
+      boolean splits() { return combine != null; }
+      Object combine(Object a, Object b) { return combine.call(a, b); }
+    });
+  }
+
+  public final Object first()
+  {
+    return run(new Term(null, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item) { found = item; run.stop = true; }
+          Object result() { return found; }
+          Object found;
+        };
+      }
+    });
+  }
+
+  public final Object find(Func f)
+  {
+    return run(new Term(f, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item)
+          {
+            if (f.call(item) == Boolean.TRUE) { found = item; run.stop = true; }
+          }
+          Object result() { return found; }
+          Object found;
+        };
+      }
+    });
+  }
+
+  public final boolean any(Func f) { return matches(f, true); }
+
+  public final boolean all(Func f) { return matches(f, false); }
+
+  private boolean matches(Func f, final boolean any)
+  {
+    return (Boolean)run(new Term(f, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item)
+          {
+            if ((f.call(item) == Boolean.TRUE) == any) { result = any; run.stop = true; }
+          }
+          Object result() { return Boolean.valueOf(result); }
+          boolean result = !any;
+        };
+      }
+    });
+  }
+
+  public final long count()
+  {
+    return (Long)run(new Term(null, null)
+    {
+      Sink make(Run run)
+      {
+        return new Sink(run)
+        {
+          void accept(Object item) { ++count; }
+          Object result() { return Long.valueOf(count); }
+          long count;
+        };
+      }
+      boolean splits() { return true; }
+      Object combine(Object a, Object b) { return Long.valueOf((Long)a + (Long)b); }
+    });
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Run
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Run the pipeline into the given terminal.  A parallel stream makes
+   * every function immutable, and if the terminal and all the stages
+   * allow it and the source is big enough, splits the source index
+   * range into chunks which each run their own sink chain.
+   */
+  private Object run(final Term term)
+  {
+    use();
+
+    boolean split = par && term.splits();
+    if (par)
+    {
+      term.toImmutable();
+      for (Stream s = this; s != null; s = s.up)
+        if (s.stage != null)
+        {
+          s.stage.toImmutable();
+          if (s.stage.seq()) split = false;
+        }
+    }
+
+    final int size = split ? src.size() : -1;
+    if (size >= List.parThreshold)
+    {
+      return new List.ParTask(null, null, size)
+      {
+        Object chunk(int lo, int hi)
+        {
+          Sink sink = term.make(new Run());
+          src.push(wrap(sink), lo, hi);
+          return sink.result();
+        }
+        Object combine(Object a, Object b) { return term.combine(a, b); }
+      }.run();
+    }
+
+    Sink sink = term.make(new Run());
+    src.push(wrap(sink));
+    return sink.result();
+  }
+
+  private Sink wrap(Sink sink)
+  {
+    for (Stream s = this; s != null; s = s.up)
+      if (s.stage != null) sink = s.stage.wrap(sink);
+    return sink;
+  }
+
+  /** Shared state of one pass through a sink chain */
+  static final class Run
+  {
+    boolean stop;
+  }
+
+  /** Receives items pushed by the source or an upstream stage */
+  static abstract class Sink
+  {
+    Sink(Run run) { this.run = run; }
+    abstract void accept(Object item);
+    Object result() { return null; }
+    final Run run;
+  }
+
+  /** Stage wraps a downstream sink with its operation */
+  static abstract class Stage
+  {
+    Stage(Func f) { this.f = f; }
+    abstract Sink wrap(Sink down);
+    boolean seq() { return false; }
+    void toImmutable() { if (f != null) f = (Func)f.toImmutable(); }
+    Func f;
+  }
+
+  /** Term makes the terminal sink and merges chunk results */
+  static abstract class Term
+  {
+    Term(Func f, Func combine) { this.f = f; this.combine = combine; }
+    abstract Sink make(Run run);
+    boolean splits() { return false; }
+    Object combine(Object a, Object b) { return null; }
+    void toImmutable()
+    {
+      if (f != null) f = (Func)f.toImmutable();
+      if (combine != null) combine = (Func)combine.toImmutable();
+    }
+    Func f;
+    Func combine;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Sources
+//////////////////////////////////////////////////////////////////////////
+
+  /** Source pushes its items into a sink until done or stopped */
+  static abstract class Source
+  {
+    /** Number of items if the source can be split by index, else -1 */
+    int size() { return -1; }
+
+    abstract void push(Sink sink);
+
+    void push(Sink sink, int lo, int hi) { throw UnsupportedErr.make(); }
+  }
+
+  static final class ListSource extends Source
+  {
+    ListSource(List list) { this.list = list; }
+
+    int size() { return list.sz(); }
+
+    void push(Sink sink) { push(sink, 0, list.sz()); }
+
+    void push(Sink sink, int lo, int hi)
+    {
+      Run run = sink.run;
+      for (int i=lo; i<hi && !run.stop; ++i) sink.accept(list.get(i));
+    }
+
+    final List list;
+  }
+
+  static final class MapSource extends Source
+  {
+    MapSource(Map map) { this.map = map; }
+
+    /**
+     * Int and Str keyed maps split over the slots of their table, which
+     * is a little larger than the map, and skip the empty slots.  Other
+     * maps cannot be indexed without copying, so they run sequentially.
+     */
+    int size()
+    {
+      slots = map.openVals();
+      return slots == null ? -1 : slots.length;
+    }
+
+    void push(Sink sink)
+    {
+      Run run = sink.run;
+      Iterator it = map.pairsIterator();
+      while (!run.stop && it.hasNext()) sink.accept(((Entry)it.next()).getValue());
+    }
+
+    void push(Sink sink, int lo, int hi)
+    {
+      Run run = sink.run;
+      Object[] slots = this.slots;
+      for (int i=lo; i<hi && !run.stop; ++i)
+      {
+        Object v = slots[i];
+        if (v != null) sink.accept(Map.OpenMap.unmask(v));
+      }
+    }
+
+    final Map map;
+    Object[] slots;
+  }
+
+  static final class RangeSource extends Source
+  {
+    RangeSource(Range r)
+    {
+      long start = r.start(), end = r.end();
+      if (start < end)
+      {
+        if (r.exclusive()) --end;
+        this.count = end - start + 1;
+        this.step = 1;
+      }
+      else
+      {
+        if (r.exclusive()) ++end;
+        this.count = Math.max(0L, start - end + 1);
+        this.step = -1;
+      }
+      this.start = start;
+    }
+
+    int size() { return count <= Integer.MAX_VALUE ? (int)count : -1; }
+
+    void push(Sink sink)
+    {
+      Run run = sink.run;
+      for (long i=0; i<count && !run.stop; ++i) sink.accept(Long.valueOf(start + i * step));
+    }
+
+    void push(Sink sink, int lo, int hi)
+    {
+      Run run = sink.run;
+      for (int i=lo; i<hi && !run.stop; ++i) sink.accept(Long.valueOf(start + i * step));
+    }
+
+    final long start, count, step;
+  }
+
+  static final class LinesSource extends Source
+  {
+    LinesSource(InStream in) { this.in = in; }
+
+    void push(Sink sink)
+    {
+      try
+      {
+        Run run = sink.run;
+        String line;
+        while (!run.stop && (line = in.readLine()) != null)
+          sink.accept(line);
+      }
+      finally
+      {
+        try { in.close(); } catch (Exception e) { e.printStackTrace(); }
+      }
+    }
+
+    final InStream in;
+  }
+
+  static final class WalkSource extends Source
+  {
+    WalkSource(File file) { this.file = file; }
+
+    void push(Sink sink) { walk(file, sink); }
+
+    private void walk(File f, Sink sink)
+    {
+      if (sink.run.stop) return;
+      sink.accept(f);
+      if (f.isDir())
+      {
+        List list = f.list();
+        for (int i=0; i<list.sz() && !sink.run.stop; ++i)
+          walk((File)list.get(i), sink);
+      }
+    }
+
+    final File file;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Fields
+//////////////////////////////////////////////////////////////////////////
+
+  private final Source src;     // source shared by the whole pipeline
+  private final Stream up;      // upstream stream or null if root
+  private final Stage stage;    // stage applied to upstream items or null
+  private final boolean par;    // run in parallel if possible
+  private boolean used;         // single use check
+}
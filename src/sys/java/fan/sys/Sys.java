@@ -136,6 +136,7 @@ public final class Sys
   public static final Type RegexType        = initType("Regex");
   public static final Type RegexMatcherType = initType("RegexMatcher");
   public static final Type ServiceType      = initType("Service");
+  public static final Type StreamType       = initType("Stream");
   public static final Type VersionType      = initType("Version");
   public static final Type UnitType         = initType("Unit");
   public static final Type UnsafeType       = initType("Unsafe");
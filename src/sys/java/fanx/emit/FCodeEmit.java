@@ -4,6 +4,7 @@
 //
 // History:
 //   27 Dec 05  Brian Frank  Creation
+//   17 Oct 26  agent  Box caches and box/unbox elision
 //
 package fanx.emit;
 
@@ -955,7 +956,12 @@ public class FCodeEmit
 
     // handle primitives
     if (to.isPrimitive())   { coerceToPrimitive(from, to); return; }
-    if (from.isPrimitive()) { coerceFromPrimitive(from, to); return; }
+    if (from.isPrimitive())
+    {
+      if (skipUnbox(from)) return;
+      coerceFromPrimitive(from, to);
+      return;
+    }
 
     // check nullable => non-nullable
     if (from.isNullable() && !to.isNullable())
@@ -1032,6 +1038,28 @@ public class FCodeEmit
       throw new IllegalStateException("Coerce " + from  + " => " + to);
   }
 
+  /**
+   * If the next op is a coerce which unboxes straight back to the
+   * primitive we are about to box, then consume it and return true
+   * so that neither the box nor the unbox is emitted.  We never skip
+   * an op which is a jump target since values reaching it from other
+   * branches are boxed.
+   */
+  private boolean skipUnbox(FTypeRef from)
+  {
+    if (peekOp() != Coerce || isJumpTarget(pos)) return false;
+    FTypeRef nextFrom = pod.typeRef(u2At(pos+1));
+    FTypeRef nextTo   = pod.typeRef(u2At(pos+3));
+    if (!nextFrom.isRef()) return false;
+    if (!(from.isPrimitiveLong()   && nextTo.isPrimitiveLong()   ||
+          from.isPrimitiveDouble() && nextTo.isPrimitiveDouble() ||
+          from.isPrimitiveBool()   && nextTo.isPrimitiveBool()))
+      return false;
+    consumeOp();
+    u2(); u2();
+    return true;
+  }
+
   void boxToObj(FTypeRef from)
   {
     if (!from.isPrimitive())       { return; }
@@ -1121,7 +1149,7 @@ public class FCodeEmit
 
   private void intBox()
   {
-    if (parent.IntBox == 0) parent.IntBox = emit.method("java/lang/Long.valueOf(J)Ljava/lang/Long;");
+    if (parent.IntBox == 0) parent.IntBox = emit.method("fan/sys/FanInt.box(J)Ljava/lang/Long;");
     code.op2(INVOKESTATIC, parent.IntBox);
   }
 
@@ -1134,7 +1162,7 @@ public class FCodeEmit
 
   private void floatBox()
   {
-    if (parent.FloatBox == 0) parent.FloatBox = emit.method("java/lang/Double.valueOf(D)Ljava/lang/Double;");
+    if (parent.FloatBox == 0) parent.FloatBox = emit.method("fan/sys/FanFloat.box(D)Ljava/lang/Double;");
     code.op2(INVOKESTATIC, parent.FloatBox);
   }
 
@@ -1170,6 +1198,38 @@ public class FCodeEmit
   private int u1() { return buf[pos++]; }
   private int u2() { return (buf[pos++] & 0xFF) << 8 | (buf[pos++] & 0xFF); }
   private int u4() { return (buf[pos++] & 0xFF) << 24 | (buf[pos++] & 0xFF) << 16 | (buf[pos++] & 0xFF) << 8 | (buf[pos++] & 0xFF); }
+  private int u2At(int i) { return (buf[i] & 0xFF) << 8 | (buf[i+1] & 0xFF); }
+
+  /**
+   * Is the given fcode location the target of a jump or switch.
+   */
+  private boolean isJumpTarget(int loc)
+  {
+    if (jumpTargets == null) jumpTargets = findJumpTargets();
+    return jumpTargets[loc];
+  }
+
+  private boolean[] findJumpTargets()
+  {
+    boolean[] targets = new boolean[len];
+    int i = 0;
+    while (i < len)
+    {
+      int op = buf[i++];
+      if (op == Switch)
+      {
+        int count = u2At(i);
+        i += 2;
+        for (int j=0; j<count; ++j, i+=2) targets[u2At(i)] = true;
+        continue;
+      }
+      String sig = OpSigs[op];
+      if (sig.equals("()")) continue;
+      if (sig.equals("(jmp)")) targets[u2At(i)] = true;
+      i += sig.equals("(typePair)") ? 4 : 2;
+    }
+    return targets;
+  }
 
 //////////////////////////////////////////////////////////////////////////
 // Reg
@@ -1282,6 +1342,7 @@ public class FCodeEmit
   String podClass;
   int[] reloc;        // fcode offsets -> java bytecode offsets
   JumpNode jumps;     // link list of jumps to back patch
+  boolean[] jumpTargets; // lazily computed fcode jump targets
   int finallyEx = -1; // local variable used in finally to stash catch exception
   int finallySp = -1; // local variable used in finally to stash stack pointer
 
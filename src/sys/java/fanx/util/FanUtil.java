@@ -460,6 +460,7 @@ public class FanUtil
     listSwizzles.put("clear",  "_clear");
     listSwizzles.put("remove", "_remove");
     listSwizzles.put("size",   "_size");
+    listSwizzles.put("stream", "_stream");
   }
 
   /**
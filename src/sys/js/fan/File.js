@@ -6,6 +6,7 @@
 //   29 Mar 2009  Andy Frank     Creation
 //   07 Jan 2023  Kiera O'Flynn  Integration w/ Node JS
 //   20 Apr 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent           Lazy streams
 //
 
 class File extends Obj {
@@ -184,6 +185,8 @@ class File extends Obj {
     }
   }
 
+  streamWalk() { return Stream.__walk(this); }
+
   normalize() { this.#throwNotSupported("normalize"); }
 
   plus(uri, checkSlash=true) {
@@ -6,6 +6,7 @@
 //   11 May 2009  Andy Frank  Creation
 //   20 May 2009  Andy Frank  Refactor to new OO model
 //   25 Apr 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent  Lazy streams
 //
 
 /**
@@ -435,6 +436,8 @@ class InStream extends Obj {
     }
   }
 
+  streamLines() { return Stream.__lines(this); }
+
   readAllStr(normalizeNewlines=true) {
     try {
       let s = "";
@@ -7,6 +7,9 @@
 //   20 May 2009  Andy Frank  Refactor to new OO model
 //   03 Dec 2009  Andy Frank  Wrap Array object
 //   04 Apr 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent  Parallel sort, map, findAll, and reduce
+//   17 Oct 2026  agent  Lazy streams
+//   17 Oct 2026  agent  Sublist views
 //
 
 /**
@@ -120,6 +123,13 @@ class List extends Obj {
     return List.make(this.#of, this.#values.slice(s, e+1));
   }
 
+  // JavaScript arrays can't share a slice, so the view is a readonly copy
+  view(range) {
+    const v = this.getRange(range);
+    if (this.#immutable) return v.toImmutable();
+    return v.ro();
+  }
+
   containsSame(value) {
     const size = this.#size;
     const vals = this.#values;
@@ -435,6 +445,8 @@ class List extends Obj {
       f(this.#values[i], i);
   }
 
+  stream() { return Stream.__list(this); }
+
   eachWhile(f) {
     for (let i=0; i<this.#size; ++i) {
       const r = f(this.#values[i], i);
@@ -851,6 +863,28 @@ class List extends Obj {
     return this;
   }
 
+//////////////////////////////////////////////////////////////////////////
+// Parallel
+//////////////////////////////////////////////////////////////////////////
+
+  // JavaScript is single threaded so these just use the sequential versions
+
+  sortPar(f=null) { return this.sort(f); }
+
+  mapPar(f) {
+    let r = arguments[arguments.length-1];
+    if (r == null || r == Void.type$ || !(r instanceof Type)) r = Obj.type$.toNullable();
+
+    const acc = List.make(r);
+    for (let i=0; i<this.#size; ++i)
+      acc.add(f(this.#values[i], i));
+    return acc;
+  }
+
+  findAllPar(f) { return this.findAll(f); }
+
+  reducePar(reduction, f, combine) { return this.reduce(reduction, f); }
+
 
 //////////////////////////////////////////////////////////////////////////
 // Conversion
@@ -6,6 +6,7 @@
 //   23 Jan 2009  Andy Frank  Creation
 //   20 May 2009  Andy Frank  Refactor to new OO model
 //   14 Apr 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent  Lazy streams
 //
 
 /**
@@ -330,6 +331,8 @@ class Map extends Obj {
     this.#each((b) => { f(b.val, b.key); });
   }
 
+  stream() { return Stream.__map(this); }
+
   eachWhile(f) {
     let result = null;
     this.#each((b) => {
@@ -6,6 +6,7 @@
 //   29 Dec 2008  Andy Frank  Creation
 //   20 May 2009  Andy Frank  Refactor to new OO model
 //   20 Apr 2023  Matthew Giannini  Refactor for ES
+//   17 Oct 2026  agent  Lazy streams
 //
 
 /**
@@ -117,6 +118,8 @@ class Range extends Obj {
     }
   }
 
+  stream() { return Stream.__range(this); }
+
   eachWhile(func) {
     let start = this.#start;
     let end   = this.#end;
@@ -0,0 +1,188 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 2026  agent  Creation
+//
+
+/**
+ * Stream is a lazy, single use pipeline.  Each stage wraps the
+ * downstream sink so a terminal runs all the stages in one pass.
+ * JavaScript is single threaded so par() is a no-op.
+ */
+class Stream extends Obj {
+
+//////////////////////////////////////////////////////////////////////////
+// Constructor
+//////////////////////////////////////////////////////////////////////////
+
+  constructor(src, up=null, stage=null) {
+    super();
+    this.#src = src;
+    this.#up = up;
+    this.#stage = stage;
+  }
+
+  #src;
+  #up;
+  #stage;
+  #used = false;
+
+  // src is a function(sink, run) which pushes items until run.stop
+  static __make(src) { return new Stream(src); }
+
+  static __list(list) {
+    return Stream.__make((sink, run) => {
+      for (let i=0; i<list.size() && !run.stop; ++i) sink(list.get(i));
+    });
+  }
+
+  static __map(map) {
+    return Stream.__make((sink, run) => {
+      map.eachWhile((v) => { sink(v); return run.stop ? true : null; });
+    });
+  }
+
+  static __range(range) {
+    return Stream.__make((sink, run) => {
+      range.eachWhile((i) => { sink(i); return run.stop ? true : null; });
+    });
+  }
+
+  static __lines(input) {
+    return Stream.__make((sink, run) => {
+      try {
+        let line;
+        while (!run.stop && (line = input.readLine()) != null) sink(line);
+      }
+      finally {
+        try { input.close(); } catch (err) { Err.make(err).trace(); }
+      }
+    });
+  }
+
+  static __walk(file) {
+    const walk = (f, sink, run) => {
+      if (run.stop) return;
+      sink(f);
+      if (f.isDir()) {
+        const list = f.list();
+        for (let i=0; i<list.size() && !run.stop; ++i) walk(list.get(i), sink, run);
+      }
+    };
+    return Stream.__make((sink, run) => walk(file, sink, run));
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Stages
+//////////////////////////////////////////////////////////////////////////
+
+  // each stage is a function(down, run) which returns the upstream sink
+
+  filter(f) { return this.#add((down) => (x) => { if (f(x)) down(x); }); }
+
+  exclude(f) { return this.#add((down) => (x) => { if (!f(x)) down(x); }); }
+
+  map(f) { return this.#add((down) => (x) => { down(f(x)); }); }
+
+  flatMap(f) {
+    return this.#add((down, run) => (x) => {
+      const list = f(x);
+      for (let i=0; i<list.size() && !run.stop; ++i) down(list.get(i));
+    });
+  }
+
+  skip(n) {
+    if (n < 0) throw ArgErr.make(`Invalid skip: ${n}`);
+    return this.#add((down) => {
+      let skipped = 0;
+      return (x) => { if (skipped < n) ++skipped; else down(x); };
+    });
+  }
+
+  limit(n) {
+    if (n < 0) throw ArgErr.make(`Invalid limit: ${n}`);
+    return this.#add((down, run) => {
+      let taken = 0;
+      if (n == 0) run.stop = true;
+      return (x) => { down(x); if (++taken >= n) run.stop = true; };
+    });
+  }
+
+  takeWhile(f) {
+    return this.#add((down, run) => (x) => {
+      if (f(x)) down(x); else run.stop = true;
+    });
+  }
+
+  par() { return this.#add(null); }
+
+  #add(stage) {
+    this.#use();
+    return new Stream(this.#src, this, stage);
+  }
+
+  #use() {
+    if (this.#used) throw Err.make("Stream already used");
+    this.#used = true;
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Terminals
+//////////////////////////////////////////////////////////////////////////
+
+  each(f) { this.#run((run) => f); }
+
+  toList(of=Obj.type$.toNullable()) {
+    const acc = List.make(of);
+    this.#run((run) => (x) => { acc.add(x); });
+    return acc;
+  }
+
+  reduce(init, f, combine=null) {
+    let reduction = init;
+    this.#run((run) => (x) => { reduction = f(reduction, x); });
+    return reduction;
+  }
+
+  first() {
+    let found = null;
+    this.#run((run) => (x) => { found = x; run.stop = true; });
+    return found;
+  }
+
+  find(f) {
+    let found = null;
+    this.#run((run) => (x) => { if (f(x)) { found = x; run.stop = true; } });
+    return found;
+  }
+
+  any(f) {
+    let result = false;
+    this.#run((run) => (x) => { if (f(x)) { result = true; run.stop = true; } });
+    return result;
+  }
+
+  all(f) {
+    let result = true;
+    this.#run((run) => (x) => { if (!f(x)) { result = false; run.stop = true; } });
+    return result;
+  }
+
+  count() {
+    let count = 0;
+    this.#run((run) => (x) => { ++count; });
+    return count;
+  }
+
+  #run(term) {
+    this.#use();
+    const run = { stop: false };
+    let sink = term(run);
+    for (let s = this; s != null; s = s.#up)
+      if (s.#stage != null) sink = s.#stage(sink, run);
+    this.#src(sink, run);
+  }
+
+}
@@ -0,0 +1,102 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.testJava;
+
+import fan.sys.*;
+
+/**
+ * ListTest verifies the packed Int[] and Float[] storage of sys::List
+ */
+public class ListTest
+  extends Test
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Main
+//////////////////////////////////////////////////////////////////////////
+
+  public void run()
+    throws Exception
+  {
+    verifyPrimitiveAccess();
+    //perf();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Primitive Access
+//////////////////////////////////////////////////////////////////////////
+
+  public void verifyPrimitiveAccess()
+  {
+    List ints = List.make(Sys.IntType, 4);
+    ints._add(Long.valueOf(3))._add(Long.valueOf(-7))._add(Long.valueOf(5000));
+    verifyEq(ints.getInt(0), 3);
+    verifyEq(ints.getInt(-1), 5000);
+    verify(ints.max(), Long.valueOf(5000));
+    verify(ints.min(), Long.valueOf(-7));
+
+    // boxes within the cache are shared
+    verify(ints.get(0) == ints.get(0));
+    verify(ints.get(0) == FanInt.box(3));
+
+    List floats = List.make(Sys.FloatType, 4);
+    floats._add(Double.valueOf(2.5))._add(Double.valueOf(Double.NaN))._add(Double.valueOf(-0.0));
+    verify(floats.getFloat(0) == 2.5);
+    verify(Double.isNaN(floats.getFloat(1)));
+    verify(Double.isNaN(((Double)floats.max()).doubleValue()));
+    verify(floats.min(), Double.valueOf(-0.0));
+
+    // unpacked lists still answer primitive access
+    List objs = List.make(Sys.ObjType, 2);
+    objs._add(Long.valueOf(9))._add(Double.valueOf(1.5));
+    verifyEq(objs.getInt(0), 9);
+    verify(objs.getFloat(1) == 1.5);
+
+    try { ints.getInt(3); fail(); } catch (IndexErr e) { verify(true); }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Perf
+//////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Compare reading a packed Int[] against an Obj[] of boxed Longs
+   * which is how Int[] was stored before packing.  The get loop boxes
+   * values above the intBoxCache bound, while getInt never boxes.
+   */
+  public void perf()
+  {
+    int n = 1000000;
+    List packed = List.make(Sys.IntType, n);
+    List boxed  = List.make(Sys.ObjType, n);
+    for (int i=0; i<n; ++i)
+    {
+      Long v = Long.valueOf(i % 100000);
+      packed._add(v);
+      boxed._add(v);
+    }
+
+    for (int trial=0; trial<5; ++trial)
+    {
+      long t1 = System.nanoTime();
+      long a = 0; for (int i=0; i<n; ++i) a += ((Long)boxed.get(i)).longValue();
+      long t2 = System.nanoTime();
+      long b = 0; for (int i=0; i<n; ++i) b += ((Long)packed.get(i)).longValue();
+      long t3 = System.nanoTime();
+      long c = 0; for (int i=0; i<n; ++i) c += packed.getInt(i);
+      long t4 = System.nanoTime();
+      verify(a == b && b == c);
+
+      System.out.println("Obj[] get:    " + (t2-t1)/1000000L + "ms");
+      System.out.println("Int[] get:    " + (t3-t2)/1000000L + "ms");
+      System.out.println("Int[] getInt: " + (t4-t3)/1000000L + "ms");
+      System.out.println();
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+//
+// Copyright (c) 2026, Brian Frank and Andy Frank
+// Licensed under the Academic Free License version 3.0
+//
+// History:
+//   17 Oct 26  agent  Creation
+//
+package fan.testJava;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import fan.sys.*;
+
+/**
+ * MapTest verifies the java.util.Map view of sys::Map
+ */
+public class MapTest
+  extends Test
+{
+
+//////////////////////////////////////////////////////////////////////////
+// Main
+//////////////////////////////////////////////////////////////////////////
+
+  public void run()
+    throws Exception
+  {
+    verifyIteratorRemove();
+    verifyIntKeys();
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Iterator.remove
+//////////////////////////////////////////////////////////////////////////
+
+  public void verifyIteratorRemove()
+  {
+    // Int keys are stored in an open addressing table where removal
+    // shifts entries back, including across the end of the table;
+    // Str keys start out in a compact array and then are hashed
+    Random r = new Random(2026);
+    for (int trial=0; trial<200; ++trial)
+    {
+      int n = r.nextInt(64);
+      verifyIteratorRemove(Sys.IntType, n, r, 0);
+      verifyIteratorRemove(Sys.IntType, n, r, 1);
+      verifyIteratorRemove(Sys.IntType, n, r, 2);
+      verifyIteratorRemove(Sys.StrType, n, r, 0);
+      verifyIteratorRemove(Sys.StrType, n, r, 1);
+      verifyIteratorRemove(Sys.StrType, n, r, 2);
+    }
+
+    // remove without next, and twice for the same next
+    Map m = Map.make(Sys.IntType, Sys.StrType);
+    m.set(Long.valueOf(1), "one");
+    Iterator it = m.keySet().iterator();
+    verifyIllegalState(it);
+    it.next();
+    it.remove();
+    verifyIllegalState(it);
+    verifyEq(it.hasNext(), false);
+    verifyEq(m.size(), 0);
+  }
+
+  private void verifyIteratorRemove(Type keyType, int n, Random r, int view)
+  {
+    // build map with random keys, clustered so some runs wrap
+    Map m = Map.make(keyType, Sys.ObjType);
+    HashMap expected = new HashMap();
+    for (int i=0; i<n; ++i)
+    {
+      long k = r.nextInt(n * 2 + 1);
+      Object key = keyType == Sys.IntType ? (Object)Long.valueOf(k) : (Object)("k" + k);
+      m.set(key, Long.valueOf(k));
+      expected.put(key, Long.valueOf(k));
+    }
+
+    // iterate removing about half, every entry must be seen once
+    int size = expected.size();
+    HashSet seen = new HashSet();
+    Iterator it = view == 0 ? m.entrySet().iterator() :
+                  view == 1 ? m.keySet().iterator() :
+                              m.values().iterator();
+    while (it.hasNext())
+    {
+      Object x = it.next();
+      Long val = view == 0 ? (Long)((java.util.Map.Entry)x).getValue() :
+                 view == 1 ? (Long)m.get(x) :
+                             (Long)x;
+      verify(seen.add(val));
+      if (r.nextBoolean())
+      {
+        it.remove();
+        expected.values().remove(val);
+      }
+    }
+    verifyEq(seen.size(), size);
+
+    // verify map is left with exactly the entries we kept
+    verifyEq(m.size(), expected.size());
+    Iterator e = expected.entrySet().iterator();
+    while (e.hasNext())
+    {
+      java.util.Map.Entry entry = (java.util.Map.Entry)e.next();
+      verify(m.get(entry.getKey()), entry.getValue());
+    }
+  }
+
+//////////////////////////////////////////////////////////////////////////
+// Int Keys
+//////////////////////////////////////////////////////////////////////////
+
+  public void verifyIntKeys()
+  {
+    // keys are returned as the same Long instances they were put
+    // with, across rehash, removal, and dup
+    Map m = Map.make(Sys.IntType, Sys.ObjType);
+    Long[] keys = new Long[100];
+    for (int i=0; i<keys.length; ++i)
+    {
+      keys[i] = new Long(i * 1000L);
+      m.set(keys[i], "v");
+    }
+    m.remove(keys[7]);
+    m.set(Long.valueOf(0), "x");
+    verifyKeys(m, keys);
+    verifyKeys(m.dup(), keys);
+  }
+
+  private void verifyKeys(Map m, Long[] keys)
+  {
+    int n = 0;
+    Iterator it = m.keySet().iterator();
+    while (it.hasNext())
+    {
+      Long k = (Long)it.next();
+      verify(k == keys[(int)(k.longValue() / 1000L)]);
+      ++n;
+    }
+    verifyEq(n, keys.length - 1);
+  }
+
+  private void verifyIllegalState(Iterator it)
+  {
+    try
+    {
+      it.remove();
+      fail();
+    }
+    catch (IllegalStateException e)
+    {
+      verify(true);
+    }
+  }
+
+}
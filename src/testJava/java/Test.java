@@ -29,6 +29,8 @@ public abstract class Test
     "DateTimeTest",
     "EmitTest",
     "FileUtilTest",
+    "ListTest",
+    "MapTest",
     "StrBufTest",
     "StrUtilTest",
     "TokenizerTest",